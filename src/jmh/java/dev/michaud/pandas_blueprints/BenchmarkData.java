@@ -0,0 +1,84 @@
+package dev.michaud.pandas_blueprints;
+
+import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shared setup for the benchmarks. Runs headless, the same way {@code CodecFormatUtilTest} does.
+ */
+public class BenchmarkData {
+
+  /** Fraction of positions in a synthetic schematic that aren't empty */
+  public static final float FILL = 0.6f;
+
+  private static boolean bootstrapped = false;
+
+  /**
+   * Load the vanilla registries. Safe to call more than once.
+   */
+  public static synchronized void bootstrap() {
+    if (!bootstrapped) {
+      SharedConstants.createGameVersion();
+      Bootstrap.initialize();
+      bootstrapped = true;
+    }
+  }
+
+  /**
+   * Get some distinct, non-air block states, spread out over every registered state so that they
+   * come from many different blocks.
+   *
+   * @param count How many states to get
+   */
+  public static @NotNull List<BlockState> blockStates(int count) {
+    final int total = Block.STATE_IDS.size();
+    final int step = Math.max(1, total / count);
+    final List<BlockState> out = new ArrayList<>(count);
+
+    for (int i = 0; out.size() < count && i < total; i += step) {
+      final BlockState state = Block.STATE_IDS.get(i);
+
+      if (state != null && !state.isAir()) {
+        out.add(state);
+      }
+    }
+
+    return out;
+  }
+
+  /**
+   * Create a schematic filled with random states.
+   *
+   * @param size      The width, height and length
+   * @param diversity How many distinct states to use
+   * @param seed      The random seed, so that every run uses the same schematic
+   */
+  public static @NotNull BlueprintSchematic schematic(int size, int diversity, long seed) {
+    final List<BlockState> states = blockStates(diversity);
+    final Random random = new Random(seed);
+    final BlueprintSchematic.Builder builder = new BlueprintSchematic.Builder(
+        new Vec3i(size, size, size), BlockPos.ORIGIN);
+
+    for (int y = 0; y < size; y++) {
+      for (int z = 0; z < size; z++) {
+        for (int x = 0; x < size; x++) {
+          if (random.nextFloat() < FILL) {
+            builder.set(x, y, z, states.get(random.nextInt(states.size())), null);
+          }
+        }
+      }
+    }
+
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,98 @@
+package dev.michaud.pandas_blueprints.blueprint;
+
+import dev.michaud.pandas_blueprints.BenchmarkData;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtOps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a palette from a stream of states, and encoding/decoding it in both formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockPaletteBenchmark {
+
+  /** How many states are looked up per benchmark call */
+  private static final int LOOKUPS = 4096;
+
+  @Param({"4", "64", "1024"})
+  public int diversity;
+
+  private BlockState[] lookups;
+  private BlockPalette palette;
+  private NbtElement encoded;
+  private NbtCompound encodedCompact;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkData.bootstrap();
+
+    final List<BlockState> states = BenchmarkData.blockStates(diversity);
+    final Random random = new Random(0L);
+
+    lookups = new BlockState[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      lookups[i] = states.get(random.nextInt(states.size()));
+    }
+
+    palette = BlockPalette.copyOf(states);
+    encoded = BlockPalette.CODEC.encodeStart(NbtOps.INSTANCE, palette).getOrThrow();
+    encodedCompact = encodeCompact();
+  }
+
+  @Benchmark
+  public BlockPalette getIdOrCreate() {
+    final BlockPalette out = new BlockPalette();
+
+    for (BlockState state : lookups) {
+      out.getIdOrCreate(state);
+    }
+
+    return out;
+  }
+
+  @Benchmark
+  public NbtElement encode() {
+    return BlockPalette.CODEC.encodeStart(NbtOps.INSTANCE, palette).getOrThrow();
+  }
+
+  @Benchmark
+  public BlockPalette decode() {
+    return BlockPalette.CODEC.parse(NbtOps.INSTANCE, encoded).getOrThrow();
+  }
+
+  @Benchmark
+  public NbtCompound encodeCompact() {
+    final NbtCompound nbt = new NbtCompound();
+    palette.writeNbt(nbt);
+
+    return nbt;
+  }
+
+  @Benchmark
+  public BlockPalette decodeCompact() throws IOException {
+    return BlockPalette.readNbt(encodedCompact);
+  }
+
+}
@@ -0,0 +1,57 @@
+package dev.michaud.pandas_blueprints.blueprint;
+
+import dev.michaud.pandas_blueprints.BenchmarkData;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.nbt.NbtCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding synthetic schematics, at several sizes and palette diversities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlueprintSchematicBenchmark {
+
+  @Param({"8", "32", "64"})
+  public int size;
+
+  @Param({"4", "64", "1024"})
+  public int diversity;
+
+  private BlueprintSchematic schematic;
+  private NbtCompound encoded;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkData.bootstrap();
+    schematic = BenchmarkData.schematic(size, diversity, 0L);
+    encoded = schematic.writeNbt(new NbtCompound(), false);
+  }
+
+  @Benchmark
+  public NbtCompound writeNbt() throws IOException {
+    return schematic.writeNbt(new NbtCompound(), false);
+  }
+
+  @Benchmark
+  public BlueprintSchematic readNbt() throws IOException {
+    return BlueprintSchematic.readNbt(encoded);
+  }
+
+}
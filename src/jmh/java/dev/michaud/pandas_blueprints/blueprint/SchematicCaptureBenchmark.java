@@ -0,0 +1,86 @@
+package dev.michaud.pandas_blueprints.blueprint;
+
+import dev.michaud.pandas_blueprints.BenchmarkData;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.PalettedContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a schematic from a snapshot of synthetic chunk sections (the part of capturing that runs
+ * off the server thread).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchematicCaptureBenchmark {
+
+  @Param({"8", "32", "64"})
+  public int size;
+
+  @Param({"4", "64", "1024"})
+  public int diversity;
+
+  private SchematicCapture.Snapshot snapshot;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkData.bootstrap();
+
+    final List<BlockState> states = BenchmarkData.blockStates(diversity);
+    final Random random = new Random(0L);
+    final BlockPos tablePos = new BlockPos(-1, 0, 0);
+    final BlockBox box = new BlockBox(0, 0, 0, size - 1, size - 1, size - 1);
+    final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+
+    for (int y = 0; y < size; y++) {
+      for (int z = 0; z < size; z++) {
+        for (int x = 0; x < size; x++) {
+          if (random.nextFloat() >= BenchmarkData.FILL) {
+            continue;
+          }
+
+          final long sectionPos = ChunkSectionPos.asLong(ChunkSectionPos.getSectionCoord(x),
+              ChunkSectionPos.getSectionCoord(y), ChunkSectionPos.getSectionCoord(z));
+
+          sections.computeIfAbsent(sectionPos, pos -> new PalettedContainer<>(Block.STATE_IDS,
+                  Blocks.AIR.getDefaultState(), PalettedContainer.PaletteProvider.BLOCK_STATE))
+              .set(x & 15, y & 15, z & 15, states.get(random.nextInt(states.size())));
+        }
+      }
+    }
+
+    snapshot = new SchematicCapture.Snapshot(box, tablePos, sections,
+        new Long2ObjectOpenHashMap<NbtCompound>());
+  }
+
+  @Benchmark
+  public BlueprintSchematic toSchematic() {
+    return snapshot.toSchematic();
+  }
+
+}
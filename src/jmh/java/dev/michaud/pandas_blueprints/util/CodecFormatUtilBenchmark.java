@@ -0,0 +1,76 @@
+package dev.michaud.pandas_blueprints.util;
+
+import dev.michaud.pandas_blueprints.BenchmarkData;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.block.BlockState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Converting block states to and from their string form, as used in schematic palettes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecFormatUtilBenchmark {
+
+  @Param({"16", "256"})
+  public int diversity;
+
+  private List<BlockState> states;
+  private String[] strings;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkData.bootstrap();
+
+    states = BenchmarkData.blockStates(diversity);
+    strings = states.stream()
+        .map(CodecFormatUtil::blockStateToString)
+        .toArray(String[]::new);
+  }
+
+  @Benchmark
+  public void stringToBlockState(Blackhole blackhole) {
+    for (String string : strings) {
+      blackhole.consume(CodecFormatUtil.stringToBlockState(string));
+    }
+  }
+
+  @Benchmark
+  public void blockStateToString(Blackhole blackhole) {
+    for (BlockState state : states) {
+      blackhole.consume(CodecFormatUtil.blockStateToString(state));
+    }
+  }
+
+  @Benchmark
+  public void cachedStringToBlockState(Blackhole blackhole) {
+    for (String string : strings) {
+      blackhole.consume(CodecFormatUtil.cachedStringToBlockState(string));
+    }
+  }
+
+  @Benchmark
+  public void cachedBlockStateToString(Blackhole blackhole) {
+    for (BlockState state : states) {
+      blackhole.consume(CodecFormatUtil.cachedBlockStateToString(state));
+    }
+  }
+
+}
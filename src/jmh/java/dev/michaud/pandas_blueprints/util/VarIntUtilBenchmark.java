@@ -0,0 +1,70 @@
+package dev.michaud.pandas_blueprints.util;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Writing and reading lists of block positions (indices into a schematic) as VarInts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VarIntUtilBenchmark {
+
+  /** The largest value, i.e. the volume of the schematic the positions are in */
+  @Param({"4096", "262144", "16777216"})
+  public int bound;
+
+  @Param({"65536"})
+  public int count;
+
+  private int[] values;
+  private byte[] encoded;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random random = new Random(0L);
+
+    values = new int[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = random.nextInt(bound);
+    }
+
+    encoded = write();
+  }
+
+  @Benchmark
+  public byte[] write() {
+    final byte[] out = new byte[VarIntUtil.varIntsSize(values, 0, values.length)];
+    VarIntUtil.writeVarInts(values, 0, values.length, out, 0);
+
+    return out;
+  }
+
+  @Benchmark
+  public void read(Blackhole blackhole) throws IOException {
+    final VarIntUtil.Reader reader = new VarIntUtil.Reader(encoded);
+
+    while (reader.hasRemaining()) {
+      blackhole.consume(reader.readVarInt());
+    }
+  }
+
+}
@@ -3,11 +3,16 @@ package dev.michaud.pandas_blueprints;
 import dev.michaud.pandas_blueprints.blocks.ModBlocks;
 import dev.michaud.pandas_blueprints.blocks.entity.ModBlockEntityTypes;
 import dev.michaud.pandas_blueprints.blocks.scaffolding.OxidizableScaffoldingBlockModels;
+import dev.michaud.pandas_blueprints.blueprint.virtualelement.HologramTickScheduler;
+import dev.michaud.pandas_blueprints.blueprint.virtualelement.HologramVisibilityManager;
 import dev.michaud.pandas_blueprints.commands.ModCommands;
 import dev.michaud.pandas_blueprints.components.ModComponentTypes;
+import dev.michaud.pandas_blueprints.gamerules.ModGameRules;
 import dev.michaud.pandas_blueprints.items.ModItems;
 import dev.michaud.pandas_blueprints.recipe.ModRecipeSerializers;
 import dev.michaud.pandas_blueprints.sounds.ModSounds;
+import dev.michaud.pandas_blueprints.util.BlockChangeNotifier;
+import dev.michaud.pandas_blueprints.util.CodecFormatUtil;
 import eu.pb4.polymer.resourcepack.api.PolymerResourcePackUtils;
 import net.fabricmc.api.ModInitializer;
 import org.slf4j.Logger;
@@ -31,11 +36,16 @@ public class PandasBlueprints implements ModInitializer {
     ModComponentTypes.registerModComponents();
     ModBlockEntityTypes.registerModBlockEntities();
     ModRecipeSerializers.registerModRecipeSerializers();
+    ModGameRules.registerModGameRules();
 
     PolymerResourcePackUtils.addModAssets(MOD_ID);
     PolymerResourcePackUtils.markAsRequired();
 
     ModCommands.registerModCommands();
+    CodecFormatUtil.registerCacheInvalidation();
+    BlockChangeNotifier.registerEvents();
+    HologramVisibilityManager.registerEvents();
+    HologramTickScheduler.registerEvents();
 
     LOGGER.info("Panda's Blueprints initialized");
   }
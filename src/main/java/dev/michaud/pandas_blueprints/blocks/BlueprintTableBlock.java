@@ -107,6 +107,8 @@ public class BlueprintTableBlock extends BlockWithEntity implements PolymerTextu
   /**
    * Generate a schematic and turn an empty blueprint into a filled blueprint with the generated id
    *
+   * @return True if capturing started. The filled blueprint is given to the player once the
+   * schematic is saved.
    * @see BlueprintTableBlockEntity#saveSchematic(String, ServerWorld, BlockBox, BlockPos)
    */
   protected boolean tryFillBlueprint(PlayerEntity player, Hand hand, @NotNull World world,
@@ -135,32 +137,65 @@ public class BlueprintTableBlock extends BlockWithEntity implements PolymerTextu
       return false;
     }
 
+    // -- Take the blueprint now, so it can't be used twice while the schematic is saved
+    final ItemStack emptyBlueprint = stack.copyWithCount(1);
+    stack.decrementUnlessCreative(1, player);
+
     // -- Save the file...
-    final Identifier blueprintId = BlueprintTableBlockEntity.saveSchematic(blueprintName,
-        serverWorld, outline.get(), pos);
+    BlueprintTableBlockEntity.saveSchematic(blueprintName, serverWorld, outline.get(), pos)
+        .whenCompleteAsync((blueprintId, throwable) -> {
 
-    if (blueprintId == null) {
-      player.sendMessage(Text.translatable("block.pandas_blueprints.blueprint_table.internal_error")
-          .formatted(Formatting.RED), true);
-      return false; // If the id is null that means something went wrong saving...
-    }
+          if (throwable != null) {
+            PandasBlueprints.LOGGER.error("Couldn't save blueprint \"{}\"", blueprintName,
+                throwable);
+            player.sendMessage(
+                Text.translatable("block.pandas_blueprints.blueprint_table.internal_error")
+                    .formatted(Formatting.RED), true);
 
-    // -- Create filled blueprint and remove empty blueprint
-    final ItemStack filled = FilledBlueprintItem.createBlueprint(blueprintId, player);
+            if (!player.isInCreativeMode()) {
+              giveBlueprint(player, hand, world, pos, emptyBlueprint);
+            }
 
-    stack.decrementUnlessCreative(1, player);
-    world.playSound(null, pos, ModSounds.BLUEPRINT_FILL, SoundCategory.BLOCKS);
+            return;
+          }
+
+          // -- Create filled blueprint
+          final ItemStack filled = FilledBlueprintItem.createBlueprint(blueprintId, player);
+
+          world.playSound(null, pos, ModSounds.BLUEPRINT_FILL, SoundCategory.BLOCKS);
+          giveBlueprint(player, hand, world, pos, filled);
+        }, serverWorld.getServer());
+
+    return true;
+  }
 
-    if (stack.isEmpty()) {
-      player.setStackInHand(hand, filled);
+  /**
+   * Give a blueprint back to the player once it's been filled. Puts it in their hand if it's free,
+   * otherwise in their inventory. If that's full or the player has left, it's dropped instead.
+   */
+  protected void giveBlueprint(PlayerEntity player, Hand hand, World world, BlockPos pos,
+      ItemStack blueprint) {
+
+    if (player.isRemoved()) {
+      final ItemEntity itemEntity = new ItemEntity(world,
+          pos.getX() + 0.5,
+          pos.getY() + 1,
+          pos.getZ() + 0.5,
+          blueprint);
+
+      itemEntity.setToDefaultPickupDelay();
+      world.spawnEntity(itemEntity);
+      return;
+    }
+
+    if (player.getStackInHand(hand).isEmpty()) {
+      player.setStackInHand(hand, blueprint);
     } else {
-      boolean inserted = player.getInventory().insertStack(filled.copy());
+      boolean inserted = player.getInventory().insertStack(blueprint.copy());
       if (!inserted) {
-        player.dropItem(filled, false);
+        player.dropItem(blueprint, false);
       }
     }
-
-    return true;
   }
 
   /**
@@ -312,7 +347,7 @@ public class BlueprintTableBlock extends BlockWithEntity implements PolymerTextu
   @Override
   protected int getComparatorOutput(BlockState state, World world, BlockPos pos) {
     if (world.getBlockEntity(pos) instanceof BlueprintTableBlockEntity blockEntity) {
-      return blockEntity.hasBlueprint() ? 15 : 0;
+      return blockEntity.getComparatorOutput();
     } else {
       return 0;
     }
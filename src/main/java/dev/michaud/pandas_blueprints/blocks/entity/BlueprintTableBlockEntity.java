@@ -3,18 +3,23 @@ package dev.michaud.pandas_blueprints.blocks.entity;
 import dev.michaud.pandas_blueprints.blocks.BlueprintTableBlock;
 import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic;
 import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematicManager;
+import dev.michaud.pandas_blueprints.blueprint.BuildProgress;
+import dev.michaud.pandas_blueprints.blueprint.SchematicCapture;
 import dev.michaud.pandas_blueprints.blueprint.virtualelement.VirtualSchematicDisplayElement;
 import dev.michaud.pandas_blueprints.components.BlueprintIdComponent;
+import dev.michaud.pandas_blueprints.gamerules.ModGameRules;
 import dev.michaud.pandas_blueprints.items.FilledBlueprintItem;
+import dev.michaud.pandas_blueprints.util.BlockChangeNotifier;
 import dev.michaud.pandas_blueprints.util.BoxDetector;
 import dev.michaud.pandas_blueprints.util.RotationHelper;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.ScaffoldingBlock;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.item.ItemStack;
-import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.storage.ReadView;
 import net.minecraft.storage.WriteView;
@@ -23,9 +28,7 @@ import net.minecraft.util.Identifier;
 import net.minecraft.util.collection.DefaultedList;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Box;
 import net.minecraft.util.math.Direction;
-import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 import net.minecraft.world.event.GameEvent;
 import net.minecraft.world.event.GameEvent.Emitter;
@@ -38,11 +41,18 @@ import org.jetbrains.annotations.Nullable;
 public class BlueprintTableBlockEntity extends BlockEntity implements
     BlockEntityInventory<BlueprintTableBlockEntity> {
 
-  public static final int BLUEPRINT_MAX_DISTANCE = 10; // Maximum side length of the blueprint
+  public static final int BLUEPRINT_MAX_DISTANCE = 10; // Default maximum side length of the blueprint
+  public static final int BLUEPRINT_MAX_DISTANCE_LIMIT = 128; // Highest the game rule can go
 
   private @Nullable Identifier blueprintId;
   private @Nullable VirtualSchematicDisplayElement schematicDisplayElement;
 
+  // The last detected outline, or null if it needs to be detected again
+  @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+  private @Nullable Optional<BlockBox> cachedOutline = null;
+  private int cachedOutlineMaxSize = 0;
+  private final BlockChangeNotifier.Listener frameChangeListener = this::onFrameChanged;
+
   private final DefaultedList<ItemStack> items = DefaultedList.ofSize(1, ItemStack.EMPTY);
 
   public BlueprintTableBlockEntity(BlockPos pos, BlockState state) {
@@ -84,38 +94,9 @@ public class BlueprintTableBlockEntity extends BlockEntity implements
       blockEntity.setSchematicDisplay();
     }
 
-    // Update schematic display
-    if (blockEntity.schematicDisplayElement != null) {
-      blockEntity.schematicDisplayElement.tick();
-      blockEntity.showBlueprintToPlayers();
-    }
-
-  }
-
-  /**
-   * Show blueprint to applicable players
-   */
-  public void showBlueprintToPlayers() {
-    final ServerWorld world = (ServerWorld) getWorld();
-
-    if (schematicDisplayElement == null || world == null) {
-      return;
-    }
-
-    final Box closeToTableBox = Box.of(Vec3d.of(getPos()), 10, 10, 10);
-    final Box closeToHologramBox = Box.from(schematicDisplayElement.getBoundingBox()).expand(5);
-
-    for (ServerPlayerEntity player : world.getPlayers()) {
+    // The schematic display is ticked by HologramTickScheduler, and who can see it is handled by
+    // HologramVisibilityManager
 
-      Box hitbox = player.getBoundingBox();
-
-      if (closeToHologramBox.intersects(hitbox)
-          || closeToTableBox.intersects(hitbox)) {
-        schematicDisplayElement.startWatching(player);
-      } else {
-        schematicDisplayElement.stopWatching(player);
-      }
-    }
   }
 
   /**
@@ -127,8 +108,10 @@ public class BlueprintTableBlockEntity extends BlockEntity implements
       schematicDisplayElement.destroy();
     }
 
+    final Identifier id = BlueprintIdComponent.getIdOrNull(getBlueprint());
+
     schematicDisplayElement = getCurrentSchematic()
-        .map(blueprint -> new VirtualSchematicDisplayElement(blueprint, this))
+        .map(blueprint -> new VirtualSchematicDisplayElement(id, blueprint, this))
         .orElse(null);
   }
 
@@ -150,6 +133,30 @@ public class BlueprintTableBlockEntity extends BlockEntity implements
     return manager.getSchematic(id);
   }
 
+  /**
+   * Get how much of the current blueprint has been built. This is kept up to date as blocks change,
+   * so it's cheap to call.
+   *
+   * @return The progress (or empty, if there is no blueprint, or the blocks haven't all been
+   * checked yet since the table was loaded)
+   */
+  public Optional<BuildProgress> getProgress() {
+    return Optional.ofNullable(schematicDisplayElement)
+        .flatMap(VirtualSchematicDisplayElement::getProgress);
+  }
+
+  /**
+   * @return The redstone signal of the table: 0 without a blueprint, 15 once it's fully built, and
+   * in between based on how much of it has been built.
+   */
+  public int getComparatorOutput() {
+    if (schematicDisplayElement != null) {
+      return schematicDisplayElement.getComparatorOutput();
+    }
+
+    return hasBlueprint() ? 15 : 0;
+  }
+
   public ItemStack getBlueprint() {
     return getItems().getFirst();
   }
@@ -186,25 +193,117 @@ public class BlueprintTableBlockEntity extends BlockEntity implements
    * @return The outline, or empty if no valid frame exists.
    */
   public static Optional<BlockBox> getOutline(World world, BlockPos tablePos) {
-    return BoxDetector.detectOutlineOf(tablePos, BLUEPRINT_MAX_DISTANCE,
+    if (world.getBlockEntity(tablePos) instanceof BlueprintTableBlockEntity blockEntity) {
+      return blockEntity.getOutline();
+    }
+
+    return detectOutline(world, tablePos, getMaxBlueprintSize(world));
+  }
+
+  private static Optional<BlockBox> detectOutline(World world, BlockPos tablePos, int maxSize) {
+    return BoxDetector.detectOutlineOf(tablePos, maxSize,
         pos -> isValidFrameBlock(world, tablePos, pos));
   }
 
   /**
-   * Create a schematic and save it to persistent storage.
+   * Get the outline for a schematic around this table. The last detected outline is remembered
+   * until a frame block is placed or removed anywhere it could reach, so asking again is cheap until
+   * the frame actually changes. Changes made without notifying listeners can be missed, so a
+   * remembered outline's frame is still checked (just its top and bottom, not the whole search)
+   * before it's returned.
+   *
+   * @return The outline, or empty if no valid frame exists.
+   */
+  public Optional<BlockBox> getOutline() {
+    if (world == null) {
+      return Optional.empty();
+    }
+
+    if (!(world instanceof ServerWorld serverWorld)) {
+      return detectOutline(world, pos, getMaxBlueprintSize(world)); // Can't listen for changes
+    }
+
+    final int maxSize = getMaxBlueprintSize(serverWorld);
+
+    if (cachedOutline != null && cachedOutline.isPresent()
+        && !hasFrame(serverWorld, cachedOutline.get())) {
+      invalidateOutline();
+    }
+
+    if (cachedOutline == null || cachedOutlineMaxSize != maxSize) {
+      cachedOutline = detectOutline(serverWorld, pos, maxSize);
+      cachedOutlineMaxSize = maxSize;
+
+      BlockChangeNotifier.register(serverWorld, BoxDetector.getSearchRegion(pos, maxSize),
+          frameChangeListener);
+    }
+
+    return cachedOutline;
+  }
+
+  /**
+   * @return True if the frame around the given outline is still there
+   */
+  private boolean hasFrame(World world, BlockBox outline) {
+    final Function<BlockPos, Boolean> isValid = framePos -> isValidFrameBlock(world, pos, framePos);
+
+    // The outline is just inside the frame
+    final int minX = outline.getMinX() - 1;
+    final int minZ = outline.getMinZ() - 1;
+    final int maxX = outline.getMaxX() + 1;
+    final int maxZ = outline.getMaxZ() + 1;
+
+    return BoxDetector.hasValidPerimeter(
+        new BlockBox(minX, outline.getMinY(), minZ, maxX, outline.getMinY(), maxZ), isValid)
+        && BoxDetector.hasValidPerimeter(
+        new BlockBox(minX, outline.getMaxY(), minZ, maxX, outline.getMaxY(), maxZ), isValid);
+  }
+
+  private void onFrameChanged(BlockPos changedPos, BlockState oldState, BlockState newState) {
+    final boolean wasFrame = oldState.getBlock() instanceof ScaffoldingBlock;
+    final boolean isFrame = newState.getBlock() instanceof ScaffoldingBlock;
+
+    // Scaffolding changes state a lot (e.g. its distance), which doesn't matter here
+    if (wasFrame != isFrame) {
+      invalidateOutline();
+    }
+  }
+
+  private void invalidateOutline() {
+    cachedOutline = null;
+
+    if (world instanceof ServerWorld serverWorld) {
+      BlockChangeNotifier.unregister(serverWorld, frameChangeListener);
+    }
+  }
+
+  /**
+   * @return The maximum side length of a blueprint in this world
+   * @see ModGameRules#BLUEPRINT_MAX_SIZE
+   */
+  public static int getMaxBlueprintSize(World world) {
+    if (world instanceof ServerWorld serverWorld) {
+      return serverWorld.getGameRules().getInt(ModGameRules.BLUEPRINT_MAX_SIZE);
+    }
+
+    return BLUEPRINT_MAX_DISTANCE;
+  }
+
+  /**
+   * Create a schematic and save it to persistent storage. Only the snapshot of the world is taken
+   * right away; the rest happens on a worker thread.
    *
    * @param name     The name to use for the schematic
    * @param world    The world where the blocks are
    * @param outline  The outline of the schematic
    * @param tablePos The position of the blueprint table
-   * @return The ID of the saved schematic, or null if it failed to save for some reason.
+   * @return A future with the ID of the saved schematic, completed exceptionally if it failed to
+   * save for some reason. Completes on the server thread.
+   * @see SchematicCapture
    */
-  public static @Nullable Identifier saveSchematic(@NotNull String name, @NotNull ServerWorld world,
-      @NotNull BlockBox outline, @NotNull BlockPos tablePos) {
-    final BlueprintSchematic schematic = BlueprintSchematic.create(world, outline, tablePos);
-    final BlueprintSchematicManager schematicManager = BlueprintSchematicManager.getInstance(world);
-
-    return schematicManager.saveSchematic(schematic, name);
+  public static CompletableFuture<Identifier> saveSchematic(@NotNull String name,
+      @NotNull ServerWorld world, @NotNull BlockBox outline, @NotNull BlockPos tablePos) {
+    return SchematicCapture.captureAndSave(name, world, outline, tablePos);
   }
 
   // -- BlockEntity overrides
@@ -228,7 +327,20 @@ public class BlueprintTableBlockEntity extends BlockEntity implements
   @Override
   public void onBlockReplaced(BlockPos pos, BlockState oldState) {
     super.onBlockReplaced(pos, oldState);
+    invalidateOutline();
+
+    if (schematicDisplayElement != null) {
+      schematicDisplayElement.destroy();
+      schematicDisplayElement = null;
+    }
+  }
+
+  @Override
+  public void markRemoved() {
+    super.markRemoved();
+    invalidateOutline();
 
+    // Also called when the chunk unloads
     if (schematicDisplayElement != null) {
       schematicDisplayElement.destroy();
       schematicDisplayElement = null;
@@ -2,6 +2,7 @@ package dev.michaud.pandas_blueprints.blocks.scaffolding;
 
 import dev.michaud.pandas_blueprints.blocks.BlockWithCustomSounds;
 import dev.michaud.pandas_blueprints.damage.ModDamageTypes;
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
 import eu.pb4.polymer.blocks.api.PolymerTexturedBlock;
 import eu.pb4.polymer.core.api.item.PolymerBlockItem;
 import eu.pb4.polymer.resourcepack.api.PolymerResourcePackUtils;
@@ -24,6 +25,7 @@ import net.minecraft.state.property.IntProperty;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.random.Random;
+import net.minecraft.world.BlockView;
 import org.jetbrains.annotations.Nullable;
 import xyz.nucleoid.packettweaker.PacketContext;
 
@@ -52,10 +54,16 @@ public class OxidizableScaffoldingBlock extends ScaffoldingBlock implements Poly
   @Override
   protected void scheduledTick(BlockState state, ServerWorld world, BlockPos pos, Random random) {
 
+    ModMetrics.SCAFFOLDING_TICKS.increment();
     final int distance = calculateScaffoldingDistance(world, pos);
-    final BlockState blockState = state
-        .with(getDistanceProperty(), distance)
-        .with(BOTTOM, shouldBeBottom(world, pos, distance));
+
+    // Update the whole structure at once, rather than waiting for the change to spread tick by tick
+    if (distance != state.get(getDistanceProperty())
+        && ScaffoldingDistancePropagator.propagate(world, pos)) {
+      return;
+    }
+
+    final BlockState blockState = withDistance(state, world, pos, distance);
 
     if (blockState.get(getDistanceProperty()) >= getFallDistance()) {
       FallingBlockEntity entity = FallingBlockEntity.spawnFromBlock(world, pos, blockState);
@@ -66,6 +74,15 @@ public class OxidizableScaffoldingBlock extends ScaffoldingBlock implements Poly
     }
   }
 
+  /**
+   * @return The given state with a new distance, and the bottom property to match
+   */
+  BlockState withDistance(BlockState state, BlockView world, BlockPos pos, int distance) {
+    return state
+        .with(getDistanceProperty(), distance)
+        .with(BOTTOM, shouldBeBottom(world, pos, distance));
+  }
+
   @Override
   public DamageSource getDamageSource(Entity attacker) {
     return attacker.getDamageSources().create(ModDamageTypes.FALLING_SCAFFOLDING, attacker);
@@ -0,0 +1,299 @@
+package dev.michaud.pandas_blueprints.blocks.scaffolding;
+
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
+import dev.michaud.pandas_blueprints.metrics.ScaffoldingPropagationEvent;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.FallingBlockEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Direction.Type;
+
+/**
+ * Updates the distances of a whole connected structure of {@link OxidizableScaffoldingBlock} at
+ * once, instead of waiting for the change to spread one scheduled tick at a time. Breaking the
+ * support of a big structure would otherwise take a wave of ticks (one per block, up to
+ * {@link OxidizableScaffoldingBlock#MAX_DISTANCE} blocks away) to settle.
+ * <p>
+ * The distance rule is the same as
+ * {@link ScaffoldingBlockDistanceHolder#calculateScaffoldingDistance}: a block standing on a solid
+ * block is 0, a block standing on scaffolding has the same distance as it, and a block next to
+ * scaffolding is one more than it. That's a shortest path where going up costs 0 and going sideways
+ * costs 1, so the distances of the whole structure are found with one 0-1 BFS. Blocks that end up
+ * too far to hold on fall, which can leave others without support, so that repeats until nothing
+ * else falls.
+ * <p>
+ * Only blocks within {@link #MAX_REACH} blocks sideways of the changed block are updated. Any
+ * distance that reaches further than that is already the maximum, so blocks further out can't
+ * change; they're treated as support from outside, like any other scaffolding next to the
+ * structure.
+ */
+public class ScaffoldingDistancePropagator {
+
+  /**
+   * Structures bigger than this are left to update one block at a time
+   */
+  public static final int MAX_STRUCTURE_SIZE = 8192;
+
+  /**
+   * How far (horizontal blocks, like the distance itself) from the changed block the update goes
+   */
+  public static final int MAX_REACH = OxidizableScaffoldingBlock.MAX_DISTANCE + 1;
+
+  private static final Direction[] NEIGHBORS = Direction.values();
+
+  /**
+   * Recompute the distance of every block in the structure containing the given position, and
+   * apply the changes. Blocks that are too far from support fall (all in the same tick).
+   *
+   * @param world  The world
+   * @param origin A copper scaffolding block that needs to be updated
+   * @return False if the structure was too big, in which case nothing was changed.
+   */
+  public static boolean propagate(ServerWorld world, BlockPos origin) {
+    final ScaffoldingPropagationEvent event = new ScaffoldingPropagationEvent();
+    event.begin();
+
+    final long start = System.nanoTime();
+    final Structure structure = Structure.find(world, origin);
+
+    if (structure == null) {
+      event.structureSize = MAX_STRUCTURE_SIZE;
+      event.tooBig = true;
+      event.commit();
+      return false;
+    }
+
+    final BitSet fallen = new BitSet(structure.size());
+    int[] distances;
+
+    // Falling blocks stop supporting others, so keep going until nothing else falls
+    while (true) {
+      distances = structure.computeDistances(world, fallen);
+      boolean changed = false;
+
+      for (int i = 0; i < structure.size(); i++) {
+        if (!fallen.get(i) && distances[i] >= structure.block(i).getFallDistance()) {
+          fallen.set(i);
+          changed = true;
+        }
+      }
+
+      if (!changed) {
+        break;
+      }
+    }
+
+    structure.apply(world, distances, fallen);
+
+    ModMetrics.SCAFFOLDING_STRUCTURE_SIZE.record(structure.size());
+    ModMetrics.SCAFFOLDING_PROPAGATION_TIME.record(System.nanoTime() - start);
+
+    event.structureSize = structure.size();
+    event.fallen = fallen.cardinality();
+    event.commit();
+    return true;
+  }
+
+  /**
+   * A connected group of copper scaffolding
+   */
+  private static class Structure {
+
+    private final LongList positions;
+    private final List<BlockState> states;
+    private final Long2IntMap indices;
+
+    private Structure(LongList positions, List<BlockState> states, Long2IntMap indices) {
+      this.positions = positions;
+      this.states = states;
+      this.indices = indices;
+    }
+
+    /**
+     * @return The connected blocks within {@link #MAX_REACH} of the origin, or null if there are
+     * more than {@link #MAX_STRUCTURE_SIZE}
+     */
+    private static Structure find(ServerWorld world, BlockPos origin) {
+      final LongList positions = new LongArrayList();
+      final List<BlockState> states = new ArrayList<>();
+      final Long2IntMap indices = new Long2IntOpenHashMap();
+      final BlockPos.Mutable mutable = new BlockPos.Mutable();
+
+      indices.defaultReturnValue(-1);
+      positions.add(origin.asLong());
+      states.add(world.getBlockState(origin));
+      indices.put(origin.asLong(), 0);
+
+      for (int i = 0; i < positions.size(); i++) {
+        final long pos = positions.getLong(i);
+
+        for (Direction direction : NEIGHBORS) {
+          final long neighbor = BlockPos.offset(pos, direction);
+
+          if (indices.containsKey(neighbor) || !isInReach(origin, neighbor)) {
+            continue;
+          }
+
+          final BlockState state = world.getBlockState(mutable.set(neighbor));
+
+          if (state.getBlock() instanceof OxidizableScaffoldingBlock) {
+            if (positions.size() >= MAX_STRUCTURE_SIZE) {
+              return null;
+            }
+
+            indices.put(neighbor, positions.size());
+            positions.add(neighbor);
+            states.add(state);
+          }
+        }
+      }
+
+      return new Structure(positions, states, indices);
+    }
+
+    private static boolean isInReach(BlockPos origin, long pos) {
+      return Math.abs(BlockPos.unpackLongX(pos) - origin.getX())
+          + Math.abs(BlockPos.unpackLongZ(pos) - origin.getZ()) <= MAX_REACH;
+    }
+
+    private int size() {
+      return positions.size();
+    }
+
+    private OxidizableScaffoldingBlock block(int index) {
+      return (OxidizableScaffoldingBlock) states.get(index).getBlock();
+    }
+
+    /**
+     * @param removed Blocks to treat as if they were gone
+     * @return The distance of every block
+     */
+    private int[] computeDistances(ServerWorld world, BitSet removed) {
+      final int[] distances = new int[size()];
+      final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+      final BlockPos.Mutable mutable = new BlockPos.Mutable();
+
+      // Start from the support outside the structure
+      for (int i = 0; i < size(); i++) {
+        distances[i] = block(i).getMaxDistance();
+
+        if (removed.get(i)) {
+          continue;
+        }
+
+        final int distance = getOutsideDistance(world, i, mutable);
+
+        if (distance < distances[i]) {
+          distances[i] = distance;
+          queue.enqueue(i);
+        }
+      }
+
+      while (!queue.isEmpty()) {
+        final int i = queue.dequeueInt();
+        final long pos = positions.getLong(i);
+
+        // Standing on this block: same distance, so it goes to the front of the queue
+        final int above = indices.get(BlockPos.offset(pos, Direction.UP));
+        if (above >= 0 && !removed.get(above) && distances[i] < distances[above]) {
+          distances[above] = distances[i];
+          queue.enqueueFirst(above);
+        }
+
+        for (Direction direction : Type.HORIZONTAL) {
+          final int side = indices.get(BlockPos.offset(pos, direction));
+
+          if (side >= 0 && !removed.get(side) && distances[i] + 1 < distances[side]) {
+            distances[side] = distances[i] + 1;
+            queue.enqueue(side);
+          }
+        }
+      }
+
+      return distances;
+    }
+
+    /**
+     * @return The distance the given block gets from blocks outside the structure, ignoring the
+     * rest of the structure.
+     */
+    private int getOutsideDistance(ServerWorld world, int index, BlockPos.Mutable mutable) {
+
+      final long pos = positions.getLong(index);
+      final OxidizableScaffoldingBlock block = block(index);
+      int distance = block.getMaxDistance();
+
+      final long down = BlockPos.offset(pos, Direction.DOWN);
+
+      // Standing on the structure is handled by the search (and on a block that fell, on air)
+      if (!indices.containsKey(down)) {
+        final BlockState stateDown = world.getBlockState(mutable.set(down));
+
+        if (stateDown.getBlock() instanceof ScaffoldingBlockDistanceHolder holder) {
+          distance = stateDown.get(holder.getDistanceProperty());
+        } else if (stateDown.isSideSolidFullSquare(world, mutable, Direction.UP)) {
+          return 0;
+        }
+      }
+
+      for (Direction direction : Type.HORIZONTAL) {
+        final long side = BlockPos.offset(pos, direction);
+
+        if (indices.containsKey(side)) {
+          continue;
+        }
+
+        final BlockState stateSide = world.getBlockState(mutable.set(side));
+
+        if (stateSide.getBlock() instanceof ScaffoldingBlockDistanceHolder holder) {
+          distance = Math.min(distance, stateSide.get(holder.getDistanceProperty()) + 1);
+        }
+      }
+
+      return Math.min(distance, block.getMaxDistance());
+    }
+
+    /**
+     * Drop the fallen blocks, then set the new states of everything else in one pass. States are
+     * set with the usual updates (like a single block's scheduled tick would), so redstone next to
+     * the structure sees the change and scaffolding outside it is updated. Neighbors inside the
+     * structure get ticks scheduled too, but they're already settled so those do nothing.
+     */
+    private void apply(ServerWorld world, int[] distances, BitSet fallen) {
+      for (int i = fallen.nextSetBit(0); i >= 0; i = fallen.nextSetBit(i + 1)) {
+        final BlockPos pos = BlockPos.fromLong(positions.getLong(i));
+        final BlockState state = states.get(i)
+            .with(block(i).getDistanceProperty(), distances[i]);
+
+        final FallingBlockEntity entity = FallingBlockEntity.spawnFromBlock(world, pos, state);
+        entity.setHurtEntities(0.5f, 6);
+        entity.dropItem = true;
+      }
+
+      for (int i = 0; i < size(); i++) {
+        if (fallen.get(i)) {
+          continue;
+        }
+
+        final BlockPos pos = BlockPos.fromLong(positions.getLong(i));
+        final BlockState oldState = states.get(i);
+        final BlockState newState = block(i).withDistance(oldState, world, pos, distances[i]);
+
+        if (oldState != newState) {
+          world.setBlockState(pos, newState, Block.NOTIFY_ALL);
+        }
+      }
+    }
+  }
+
+}
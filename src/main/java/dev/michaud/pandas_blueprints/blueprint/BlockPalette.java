@@ -3,9 +3,21 @@ package dev.michaud.pandas_blueprints.blueprint;
 import com.google.common.collect.ImmutableList;
 import com.mojang.serialization.Codec;
 import dev.michaud.pandas_blueprints.util.CodecFormatUtil;
+import dev.michaud.pandas_blueprints.util.VarIntUtil;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
+import net.minecraft.nbt.InvalidNbtException;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.registry.Registries;
+import net.minecraft.state.property.Property;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.collection.IdList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
@@ -13,6 +25,9 @@ import org.jetbrains.annotations.Unmodifiable;
 /**
  * A "palette" of blocks states. Associates each state with a unique ID, to more efficiently
  * serialize a large number of states.
+ * <p>
+ * There are two ways to serialize a palette: {@link #CODEC} writes a list of block state strings,
+ * and {@link #writeNbt(NbtCompound)} writes a compact table (see there).
  *
  * @see BlueprintSchematic
  */
@@ -51,6 +66,146 @@ public final class BlockPalette extends IdList<BlockState> {
     return idMap.getInt(state);
   }
 
+  /**
+   * Write this palette in a compact form. The block ids and property values used by the palette are
+   * each written once, to the {@code "PaletteBlocks"} and {@code "PaletteProperties"} string lists.
+   * Each state is then written to {@code "PaletteData"} as VarInts: the index of its block, the
+   * number of non-default properties, and the index of each property value. Since the tables use
+   * names rather than raw ids, this still works if the registries change between versions.
+   *
+   * @param nbt The nbt to write to
+   * @see #readNbt(NbtCompound)
+   */
+  public void writeNbt(@NotNull NbtCompound nbt) {
+    final Object2IntMap<Block> blockIndices = new Object2IntOpenHashMap<>();
+    final Object2IntMap<String> propertyIndices = new Object2IntOpenHashMap<>();
+    final List<String> blockNames = new ArrayList<>();
+    final List<String> propertyNames = new ArrayList<>();
+    final IntArrayList data = new IntArrayList();
+
+    for (BlockState state : list) {
+      final Block block = state.getBlock();
+      final BlockState defaultState = block.getDefaultState();
+
+      if (!blockIndices.containsKey(block)) {
+        blockIndices.put(block, blockNames.size());
+        blockNames.add(CodecFormatUtil.blockToString(block));
+      }
+
+      data.add(blockIndices.getInt(block));
+
+      final int countIndex = data.size();
+      data.add(0);
+
+      for (Property<?> property : state.getProperties()) {
+        if (state.get(property).equals(defaultState.get(property))) {
+          continue;
+        }
+
+        final String value = property.createValue(state).toString();
+
+        if (!propertyIndices.containsKey(value)) {
+          propertyIndices.put(value, propertyNames.size());
+          propertyNames.add(value);
+        }
+
+        data.add(propertyIndices.getInt(value));
+        data.set(countIndex, data.getInt(countIndex) + 1);
+      }
+    }
+
+    final int[] values = data.elements();
+    final byte[] bytes = new byte[VarIntUtil.varIntsSize(values, 0, data.size())];
+    VarIntUtil.writeVarInts(values, 0, data.size(), bytes, 0);
+
+    nbt.put("PaletteBlocks", Codec.STRING.listOf(), blockNames);
+    nbt.put("PaletteProperties", Codec.STRING.listOf(), propertyNames);
+    nbt.putByteArray("PaletteData", bytes);
+  }
+
+  /**
+   * Read a palette written by {@link #writeNbt(NbtCompound)}. Each block id and property name is
+   * only looked up once, no matter how many states use it.
+   *
+   * @param nbt The nbt to read from
+   * @return A new palette
+   * @throws InvalidNbtException If the nbt is malformed or refers to unknown blocks/properties.
+   * @throws IOException         If the data ended prematurely.
+   */
+  public static @NotNull BlockPalette readNbt(@NotNull NbtCompound nbt) throws IOException {
+    final List<String> blockNames = nbt.get("PaletteBlocks", Codec.STRING.listOf())
+        .orElseThrow(() -> new InvalidNbtException("No palette blocks!"));
+    final List<String> propertyStrings = nbt.get("PaletteProperties", Codec.STRING.listOf())
+        .orElse(List.of());
+    final byte[] data = nbt.getByteArray("PaletteData")
+        .orElseThrow(() -> new InvalidNbtException("No palette data!"));
+
+    final Block[] blocks = new Block[blockNames.size()];
+    for (int i = 0; i < blocks.length; i++) {
+      final Identifier id = Identifier.tryParse(blockNames.get(i));
+
+      blocks[i] = id == null ? null : Registries.BLOCK.getOptionalValue(id).orElse(null);
+
+      if (blocks[i] == null) {
+        throw new InvalidNbtException("Unknown block in palette: " + blockNames.get(i));
+      }
+    }
+
+    final String[] propertyNames = new String[propertyStrings.size()];
+    final String[] propertyValues = new String[propertyStrings.size()];
+    for (int i = 0; i < propertyNames.length; i++) {
+      final String string = propertyStrings.get(i);
+      final int separator = string.indexOf('=');
+
+      if (separator == -1) {
+        throw new InvalidNbtException("Invalid palette property: " + string);
+      }
+
+      propertyNames[i] = string.substring(0, separator);
+      propertyValues[i] = string.substring(separator + 1);
+    }
+
+    final VarIntUtil.Reader reader = new VarIntUtil.Reader(data);
+    final BlockPalette palette = new BlockPalette();
+
+    while (reader.hasRemaining()) {
+      final int blockIndex = reader.readVarInt();
+      final int propertyCount = reader.readVarInt();
+
+      if (blockIndex < 0 || blockIndex >= blocks.length || propertyCount < 0
+          || propertyCount > reader.remaining()) {
+        throw new InvalidNbtException("Palette data is out of bounds!");
+      }
+
+      final Block block = blocks[blockIndex];
+      BlockState state = block.getDefaultState();
+
+      for (int i = 0; i < propertyCount; i++) {
+        final int propertyIndex = reader.readVarInt();
+
+        if (propertyIndex < 0 || propertyIndex >= propertyNames.length) {
+          throw new InvalidNbtException("Palette data is out of bounds!");
+        }
+
+        final String name = propertyNames[propertyIndex];
+        final String value = propertyValues[propertyIndex];
+        final Property<?> property = block.getStateManager().getProperty(name);
+
+        if (property == null) {
+          throw new InvalidNbtException("Property " + name + " not found on " + block + ".");
+        }
+
+        state = CodecFormatUtil.withProperty(state, property, value)
+            .orElseThrow(() -> new InvalidNbtException(
+                "Invalid value " + value + " for property " + name + "."));
+      }
+
+      palette.add(state);
+    }
+
+    return palette;
+  }
+
   @Override
   public @NotNull BlockState get(int index) {
     final BlockState state = super.get(index);
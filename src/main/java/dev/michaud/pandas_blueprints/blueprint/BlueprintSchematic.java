@@ -1,23 +1,23 @@
 package dev.michaud.pandas_blueprints.blueprint;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.AbstractIterator;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.DataResult;
 import dev.michaud.pandas_blueprints.PandasBlueprints;
 import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic.BlueprintBlockInfo;
-import dev.michaud.pandas_blueprints.tags.ModBlockTags;
-import dev.michaud.pandas_blueprints.util.BoxDetector;
 import dev.michaud.pandas_blueprints.util.CodecFormatUtil;
 import dev.michaud.pandas_blueprints.util.VarIntUtil;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMaps;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import net.minecraft.SharedConstants;
 import net.minecraft.block.Block;
@@ -26,11 +26,16 @@ import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.nbt.InvalidNbtException;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtList;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.storage.NbtWriteView;
+import net.minecraft.util.BlockRotation;
 import net.minecraft.util.ErrorReporter;
 import net.minecraft.util.ErrorReporter.Logging;
+import net.minecraft.util.collection.PackedIntegerArray;
+import net.minecraft.util.collection.PaletteStorage;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3i;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.Contract;
@@ -42,35 +47,80 @@ import org.jetbrains.annotations.Nullable;
  */
 public class BlueprintSchematic implements Iterable<BlueprintBlockInfo> {
 
-  public static final int VERSION = 1;
+  /**
+   * <ol>
+   *   <li>Positions of each palette id stored as absolute packed indices</li>
+   *   <li>Positions of each palette id stored as runs of consecutive indices, each one relative to
+   *   the end of the run before it</li>
+   *   <li>Palette stored as a compact table instead of a list of block state strings (see
+   *   {@link BlockPalette#writeNbt(NbtCompound)})</li>
+   * </ol>
+   */
+  public static final int VERSION = 3;
   public static final int MIN_SUPPORTED_VERSION = 1;
   public static final int DATA_VERSION = SharedConstants.getGameVersion().dataVersion().id();
   public static final int MIN_SUPPORTED_DATA_VERSION = 4438; //TODO: Verify
 
-  private final List<BlueprintBlockInfo> blockInfos;
-  private final Object2IntMap<Block> blockCounts;
   private final Vec3i size;
   private final BlockPos offset;
 
+  private final BlockPalette palette;
+
+  /**
+   * Palette ids of every position in the volume, packed so each entry only uses as many bits as the
+   * palette needs. A value of {@code 0} means there is no block at that position; anything else is
+   * the palette id plus one.
+   */
+  private final PaletteStorage blocks;
+
+  /**
+   * Block entity data, keyed by packed index. Most blocks don't have any, so this is kept separate.
+   */
+  private final Int2ObjectMap<NbtCompound> blockEntities;
+
+  private final int blockCount;
+  private final Object2IntMap<Block> blockCounts;
+
+  private @Nullable BitSet occluded = null; // Computed when first needed
+  private final Rotated[] rotated = new Rotated[BlockRotation.values().length]; // Same here
+
   public static final Codec<BlueprintSchematic> CODEC = NbtCompound.CODEC.comapFlatMap(
       BlueprintSchematic::readNbtSafe, BlueprintSchematic::writeNbtSafe);
 
-  protected BlueprintSchematic(List<BlueprintBlockInfo> blockInfos, Vec3i size, BlockPos offset) {
-    this.blockInfos = blockInfos;
+  protected BlueprintSchematic(Vec3i size, BlockPos offset, BlockPalette palette,
+      PaletteStorage blocks, Int2ObjectMap<NbtCompound> blockEntities) {
     this.size = size;
     this.offset = offset;
+    this.palette = palette;
+    this.blocks = blocks;
+    this.blockEntities = Int2ObjectMaps.unmodifiable(blockEntities);
 
-    blockCounts = buildBlockCounts(blockInfos);
+    final int[] paletteCounts = new int[palette.size()];
+    int count = 0;
+
+    for (int i = 0; i < blocks.getSize(); i++) {
+      final int value = blocks.get(i);
+
+      if (value != 0) {
+        paletteCounts[value - 1]++;
+        count++;
+      }
+    }
+
+    this.blockCount = count;
+    this.blockCounts = buildBlockCounts(palette, paletteCounts);
   }
 
-  private static Object2IntMap<Block> buildBlockCounts(List<BlueprintBlockInfo> blockInfos) {
+  private static Object2IntMap<Block> buildBlockCounts(BlockPalette palette, int[] paletteCounts) {
     final Object2IntMap<Block> blockCount = new Object2IntOpenHashMap<>();
 
-    for (BlueprintBlockInfo info : blockInfos) {
-      Block block = info.state().getBlock();
-      int count = blockCount.getInt(block);
+    for (int id = 0; id < paletteCounts.length; id++) {
+      if (paletteCounts[id] == 0) {
+        continue;
+      }
 
-      blockCount.put(block, count + 1);
+      final Block block = palette.get(id).getBlock();
+      blockCount.mergeInt(block, paletteCounts[id], Integer::sum);
     }
 
     return Object2IntMaps.unmodifiable(blockCount);
@@ -93,45 +143,146 @@ public class BlueprintSchematic implements Iterable<BlueprintBlockInfo> {
   }
 
   /**
-   * Creates a new schematic
+   * @return The number of positions in this schematic that hold a block
+   */
+  public int getBlockCount() {
+    return blockCount;
+  }
+
+  /**
+   * Get the state at the given position, relative to the schematic's minimum corner.
    *
-   * @param world    The world
-   * @param box      The bounding box to save
-   * @param tablePos The position of the blueprint table
-   * @return A new schematic that stores the blocks in the given box
+   * @return The block state, or null if the position is outside the schematic or holds no block.
    */
-  @Contract(value = "_, _, _-> new", pure = true)
-  public static @NotNull BlueprintSchematic create(@NotNull World world, @NotNull BlockBox box,
-      @NotNull BlockPos tablePos) {
+  public @Nullable BlockState getBlockState(int x, int y, int z) {
+    if (!contains(x, y, z)) {
+      return null;
+    }
+
+    final int value = blocks.get(index(x, y, z));
+    return value == 0 ? null : palette.get(value - 1);
+  }
+
+  /**
+   * Get the state at the given packed index.
+   *
+   * @return The block state, or null if the position holds no block.
+   * @see #index(int, int, int)
+   */
+  public @Nullable BlockState getBlockState(int index) {
+    final int value = blocks.get(index);
+    return value == 0 ? null : palette.get(value - 1);
+  }
 
-    final ImmutableList.Builder<BlueprintBlockInfo> builder = ImmutableList.builder();
+  /**
+   * Check if the block at the given position is hidden from every side by other blocks in this
+   * schematic, i.e. all six neighbours are inside the schematic and are opaque full cubes.
+   */
+  public boolean isOccluded(int x, int y, int z) {
+    return contains(x, y, z) && isOccluded(index(x, y, z));
+  }
 
-    final BlockPos maxCorner = BoxDetector.getMaxPos(box);
-    final BlockPos minCorner = BoxDetector.getMinPos(box);
+  /**
+   * @see #isOccluded(int, int, int)
+   */
+  public boolean isOccluded(int index) {
+    if (occluded == null) {
+      occluded = computeOccluded();
+    }
 
-    for (BlockPos pos : BlockPos.iterate(minCorner, maxCorner)) {
+    return occluded.get(index);
+  }
 
-      if (pos.equals(tablePos)) {
-        continue;
-      }
+  private BitSet computeOccluded() {
+    final int width = size.getX();
+    final int height = size.getY();
+    final int length = size.getZ();
 
-      final BlockState state = world.getBlockState(pos);
+    final BitSet opaque = new BitSet(blocks.getSize());
+    final BitSet out = new BitSet(blocks.getSize());
 
-      if (state.isIn(ModBlockTags.BLUEPRINT_IGNORES)) {
-        continue;
+    for (int i = 0; i < blocks.getSize(); i++) {
+      final int value = blocks.get(i);
+
+      if (value != 0 && palette.get(value - 1).isOpaqueFullCube()) {
+        opaque.set(i);
       }
+    }
 
-      final BlockPos offsetPos = pos.subtract(minCorner).toImmutable();
-      final BlockEntity blockEntity = world.getBlockEntity(pos);
-      final BlueprintBlockInfo blockInfo = BlueprintBlockInfo.of(offsetPos, state, blockEntity);
+    // Blocks on the edge of the schematic are never occluded
+    for (int y = 1; y < height - 1; y++) {
+      for (int z = 1; z < length - 1; z++) {
+        for (int x = 1; x < width - 1; x++) {
+          final int i = index(x, y, z);
+
+          if (blocks.get(i) != 0
+              && opaque.get(i - 1) && opaque.get(i + 1)
+              && opaque.get(i - width) && opaque.get(i + width)
+              && opaque.get(i - width * length) && opaque.get(i + width * length)) {
+            out.set(i);
+          }
+        }
+      }
+    }
+
+    return out;
+  }
 
-      builder.add(blockInfo);
+  /**
+   * Get this schematic's blocks rotated around the blueprint table. These are computed once per
+   * rotation and shared by everything showing this schematic.
+   */
+  public @NotNull Rotated getRotated(@NotNull BlockRotation rotation) {
+    Rotated out = rotated[rotation.ordinal()];
+
+    if (out == null) {
+      // Computing it twice on different threads is harmless, both results are the same
+      out = new Rotated(this, rotation);
+      rotated[rotation.ordinal()] = out;
     }
 
-    final Vec3i size = BoxDetector.getSize(box);
-    final BlockPos offset = minCorner.subtract(tablePos);
+    return out;
+  }
+
+  public boolean contains(int x, int y, int z) {
+    return x >= 0 && y >= 0 && z >= 0
+        && x < size.getX() && y < size.getY() && z < size.getZ();
+  }
+
+  /**
+   * @return The packed index of the given relative position, in the same order as the "Data" array
+   * ({@code x + z * width + y * width * length}).
+   */
+  public int index(int x, int y, int z) {
+    return x + (z * size.getX()) + (y * size.getX() * size.getZ());
+  }
+
+  /**
+   * @return The relative position of the given packed index
+   * @see #index(int, int, int)
+   */
+  public BlockPos unpackIndex(int index) {
+    final int width = size.getX();
+    final int layer = width * size.getZ();
+    final int base = index % layer;
+
+    return new BlockPos(base % width, index / layer, base / width);
+  }
+
+  /**
+   * Creates a new schematic, all on the current thread.
+   *
+   * @param world    The world
+   * @param box      The bounding box to save
+   * @param tablePos The position of the blueprint table
+   * @return A new schematic that stores the blocks in the given box
+   * @see SchematicCapture#captureAndSave(String, ServerWorld, BlockBox, BlockPos)
+   */
+  @Contract(value = "_, _, _-> new", pure = true)
+  public static @NotNull BlueprintSchematic create(@NotNull World world, @NotNull BlockBox box,
+      @NotNull BlockPos tablePos) {
 
-    return new BlueprintSchematic(builder.build(), size, offset);
+    return SchematicCapture.snapshot(world, box, tablePos).toSchematic();
   }
 
   public static DataResult<BlueprintSchematic> readNbtSafe(@NotNull NbtCompound nbt) {
@@ -168,47 +319,39 @@ public class BlueprintSchematic implements Iterable<BlueprintBlockInfo> {
 
     final NbtCompound blockData = new NbtCompound();
 
-    if (!blockInfos.isEmpty()) {
-      final BlockPalette blockPalette = new BlockPalette();
-      final NbtList blockEntities = new NbtList();
-
-      final List<List<Integer>> idToPositions = new ArrayList<>();
+    if (blockCount > 0) {
+      final int[] starts = new int[palette.size() + 1];
+      final int[] positions = sortPositionsByPaletteId(starts);
 
-      for (BlueprintBlockInfo blockInfo : blockInfos) {
-        final int x = blockInfo.pos.getX();
-        final int y = blockInfo.pos.getY();
-        final int z = blockInfo.pos.getZ();
+      int dataSize = 0;
+      for (int id = 0; id < palette.size(); id++) {
+        dataSize += runsSize(positions, starts[id], starts[id + 1]);
+      }
 
-        final int pos = (x) + (z * width) + (y * width * length);
-        final int id = blockPalette.getIdOrCreate(blockInfo.state);
+      final byte[] data = new byte[dataSize];
+      int cursor = 0;
 
-        while (idToPositions.size() <= id) {
-          idToPositions.add(new ArrayList<>());
-        }
+      for (int id = 0; id < palette.size(); id++) {
+        cursor = writeRuns(positions, starts[id], starts[id + 1], data, cursor);
+      }
 
-        idToPositions.get(id).add(pos);
+      final NbtList blockEntityList = new NbtList();
 
-        if (blockInfo.hasBlockEntityData() && saveBlockEntityData) {
-          NbtCompound blockEntity = new NbtCompound();
-          blockEntity.put("Data", blockInfo.nbt);
-          blockEntity.put("Pos", BlockPos.CODEC, blockInfo.pos);
+      if (saveBlockEntityData) {
+        for (Int2ObjectMap.Entry<NbtCompound> entry : blockEntities.int2ObjectEntrySet()) {
+          final NbtCompound blockEntity = new NbtCompound();
+          blockEntity.put("Data", entry.getValue());
+          blockEntity.put("Pos", BlockPos.CODEC, unpackIndex(entry.getIntKey()));
 
-          blockEntities.add(blockEntity);
+          blockEntityList.add(blockEntity);
         }
       }
 
-      final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-
-      for (List<Integer> positions : idToPositions) {
-        VarIntUtil.writeVarInt(positions.size(), buffer);
-        VarIntUtil.writeVarInts(positions, buffer);
-      }
-
-      blockData.put("Palette", BlockPalette.CODEC, blockPalette);
-      blockData.putByteArray("Data", buffer.toByteArray());
+      palette.writeNbt(blockData);
+      blockData.putByteArray("Data", data);
 
-      if (!blockEntities.isEmpty()) {
-        blockData.put("BlockEntities", blockEntities);
+      if (!blockEntityList.isEmpty()) {
+        blockData.put("BlockEntities", blockEntityList);
       }
     }
 
@@ -227,6 +370,147 @@ public class BlueprintSchematic implements Iterable<BlueprintBlockInfo> {
     return nbt;
   }
 
+  /**
+   * Get every non-empty position, grouped by palette id (a counting sort). Within each group the
+   * positions are in ascending order.
+   *
+   * @param starts Filled with where each palette id's positions start; the positions of id
+   *               {@code i} are at {@code [starts[i], starts[i + 1])}. Must have room for
+   *               {@code palette.size() + 1} entries.
+   * @return The sorted positions
+   */
+  private int[] sortPositionsByPaletteId(int[] starts) {
+    for (int pos = 0; pos < blocks.getSize(); pos++) {
+      final int value = blocks.get(pos);
+
+      if (value != 0) {
+        starts[value]++; // Shifted by one, so the prefix sum below gives start indices
+      }
+    }
+
+    for (int id = 1; id < starts.length; id++) {
+      starts[id] += starts[id - 1];
+    }
+
+    final int[] positions = new int[blockCount];
+    final int[] cursors = starts.clone();
+
+    for (int pos = 0; pos < blocks.getSize(); pos++) {
+      final int value = blocks.get(pos);
+
+      if (value != 0) {
+        positions[cursors[value - 1]++] = pos;
+      }
+    }
+
+    return positions;
+  }
+
+  /**
+   * Get the number of bytes {@link #writeRuns} will write for the given positions.
+   */
+  private static int runsSize(int[] positions, int from, int to) {
+    int runCount = 0;
+    int size = 0;
+    int end = 0; // End of the previous run (exclusive)
+
+    for (int i = from; i < to; ) {
+      final int start = positions[i];
+      int runLength = 1;
+
+      while (i + runLength < to && positions[i + runLength] == start + runLength) {
+        runLength++;
+      }
+
+      size += VarIntUtil.varIntSize(start - end) + VarIntUtil.varIntSize(runLength);
+      runCount++;
+
+      end = start + runLength;
+      i += runLength;
+    }
+
+    return VarIntUtil.varIntSize(runCount) + size;
+  }
+
+  /**
+   * Write sorted positions as the number of runs, followed by a (gap, length) pair for each run of
+   * consecutive positions. The gap is relative to the end of the previous run. Positions in a
+   * schematic are heavily clustered, so most pairs only take up two bytes.
+   *
+   * @return The index after the last byte written.
+   */
+  private static int writeRuns(int[] positions, int from, int to, byte[] data, int cursor) {
+    int runCount = 0;
+
+    for (int i = from; i < to; runCount++) {
+      int runLength = 1;
+
+      while (i + runLength < to && positions[i + runLength] == positions[i] + runLength) {
+        runLength++;
+      }
+
+      i += runLength;
+    }
+
+    cursor = VarIntUtil.writeVarInt(runCount, data, cursor);
+    int end = 0;
+
+    for (int i = from; i < to; ) {
+      final int start = positions[i];
+      int runLength = 1;
+
+      while (i + runLength < to && positions[i + runLength] == start + runLength) {
+        runLength++;
+      }
+
+      cursor = VarIntUtil.writeVarInt(start - end, data, cursor);
+      cursor = VarIntUtil.writeVarInt(runLength, data, cursor);
+
+      end = start + runLength;
+      i += runLength;
+    }
+
+    return cursor;
+  }
+
+  /**
+   * Read positions written by {@link #writeRuns} (version 2+), after the run count.
+   */
+  private static void readRuns(VarIntUtil.Reader reader, int runCount, int volume, int id,
+      Builder builder) throws IOException {
+
+    int end = 0;
+
+    for (int i = 0; i < runCount; i++) {
+      final long start = (long) end + reader.readVarInt();
+      final int runLength = reader.readVarInt();
+
+      if (start < 0 || runLength <= 0 || start + runLength > volume) {
+        throw new InvalidNbtException("Block data is out of bounds!");
+      }
+
+      builder.fillPaletteId((int) start, (int) start + runLength, id);
+      end = (int) start + runLength;
+    }
+  }
+
+  /**
+   * Read absolute positions (version 1), after the position count.
+   */
+  private static void readPositions(VarIntUtil.Reader reader, int count, int volume, int id,
+      Builder builder) throws IOException {
+
+    for (int i = 0; i < count; i++) {
+      final int packedPos = reader.readVarInt();
+
+      if (packedPos < 0 || packedPos >= volume) {
+        throw new InvalidNbtException("Block data is out of bounds!");
+      }
+
+      builder.setPaletteId(packedPos, id);
+    }
+  }
+
   /**
    * Create a schematic from nbt
    *
@@ -278,6 +562,11 @@ public class BlueprintSchematic implements Iterable<BlueprintBlockInfo> {
           String.format("Invalid blueprint size! Got %d/%d/%d", width, height, length));
     }
 
+    if ((long) width * height * length > Integer.MAX_VALUE) {
+      throw new InvalidNbtException(
+          String.format("Blueprint is too big! Got %d/%d/%d", width, height, length));
+    }
+
     final Vec3i size = new Vec3i(width, height, length);
     final BlockPos offset = nbt.get("Offset", BlockPos.CODEC).orElse(BlockPos.ORIGIN);
 
@@ -285,50 +574,192 @@ public class BlueprintSchematic implements Iterable<BlueprintBlockInfo> {
 
     if (blockData.isEmpty()) {
       PandasBlueprints.LOGGER.warn("Empty blueprint!");
-      return new BlueprintSchematic(ImmutableList.of(), size, offset);
+      return new Builder(size, offset).build();
     }
 
     // Get block stuff
-    final BlockPalette palette = blockData.get("Palette", BlockPalette.CODEC)
-        .orElseThrow(() -> new InvalidNbtException("No block palette!"));
+    final BlockPalette palette = version >= 3
+        ? BlockPalette.readNbt(blockData)
+        : blockData.get("Palette", BlockPalette.CODEC)
+            .orElseThrow(() -> new InvalidNbtException("No block palette!"));
 
     final byte[] data = blockData.getByteArray("Data")
         .orElseThrow(() -> new InvalidNbtException("Invalid block data!"));
 
     final NbtList blockEntities = blockData.getListOrEmpty("BlockEntities");
 
-    final ByteArrayInputStream in = new ByteArrayInputStream(data);
-    ImmutableList.Builder<BlueprintBlockInfo> builder = ImmutableList.builder();
+    final VarIntUtil.Reader reader = new VarIntUtil.Reader(data);
+    final Builder builder = new Builder(size, offset, palette);
+    final int volume = width * height * length;
 
-    int id = 0;
-    while (in.available() > 0) {
-      int listSize = VarIntUtil.readVarInt(in);
+    for (int id = 0; reader.hasRemaining(); id++) {
+      final int count = reader.readVarInt();
 
-      for (int i = 0; i < listSize; i++) {
-        int packedPos = VarIntUtil.readVarInt(in);
+      if (id >= palette.size() || count < 0 || count > reader.remaining()) {
+        throw new InvalidNbtException("Block data is out of bounds!");
+      }
 
-        int base = packedPos % (width * length);
-        final BlockPos pos = new BlockPos(
-            base % width,
-            packedPos / (width * length),
-            base / width
-        );
+      if (version == 1) {
+        readPositions(reader, count, volume, id, builder);
+      } else {
+        readRuns(reader, count, volume, id, builder);
+      }
+    }
 
-        final BlockState state = palette.get(id);
+    for (int i = 0; i < blockEntities.size(); i++) {
+      final NbtCompound blockEntity = blockEntities.getCompoundOrEmpty(i);
+      final Optional<BlockPos> pos = blockEntity.get("Pos", BlockPos.CODEC);
+      final Optional<NbtCompound> blockEntityNbt = blockEntity.getCompound("Data");
 
-        //TODO: Block Entities
-        builder.add(new BlueprintBlockInfo(pos, state, null));
+      if (pos.isPresent() && blockEntityNbt.isPresent()) {
+        builder.setBlockEntityData(pos.get().getX(), pos.get().getY(), pos.get().getZ(),
+            blockEntityNbt.get());
       }
-
-      id++;
     }
 
-    return new BlueprintSchematic(builder.build(), size, offset);
+    return builder.build();
   }
 
+  /**
+   * Iterates over every block in this schematic, in packed index order. The returned infos are
+   * created lazily, so they shouldn't be held on to longer than needed.
+   */
   @Override
   public @NotNull Iterator<BlueprintBlockInfo> iterator() {
-    return blockInfos.iterator();
+    return new AbstractIterator<>() {
+      private int index = -1;
+
+      @Override
+      protected BlueprintBlockInfo computeNext() {
+        while (++index < blocks.getSize()) {
+          final int value = blocks.get(index);
+
+          if (value != 0) {
+            return new BlueprintBlockInfo(unpackIndex(index), palette.get(value - 1),
+                blockEntities.get(index));
+          }
+        }
+
+        return endOfData();
+      }
+    };
+  }
+
+  /**
+   * Builds a schematic one position at a time. Positions that are never set are left empty.
+   */
+  public static class Builder {
+
+    private final Vec3i size;
+    private final BlockPos offset;
+    private final BlockPalette palette;
+    private final int[] values;
+    private final Int2ObjectMap<NbtCompound> blockEntities = new Int2ObjectOpenHashMap<>();
+
+    public Builder(@NotNull Vec3i size, @NotNull BlockPos offset) {
+      this(size, offset, new BlockPalette());
+    }
+
+    /**
+     * @param palette A palette to start from. Ids passed to {@link #setPaletteId(int, int)} refer to
+     *                this palette.
+     */
+    public Builder(@NotNull Vec3i size, @NotNull BlockPos offset, @NotNull BlockPalette palette) {
+      this.size = size;
+      this.offset = offset;
+      this.palette = palette;
+      this.values = new int[size.getX() * size.getY() * size.getZ()];
+    }
+
+    @Contract("_, _, _, _, _ -> this")
+    public Builder set(int x, int y, int z, @NotNull BlockState state, @Nullable NbtCompound nbt) {
+      final int index = index(x, y, z);
+      values[index] = palette.getIdOrCreate(state) + 1;
+
+      if (nbt != null && !nbt.isEmpty()) {
+        blockEntities.put(index, nbt);
+      } else {
+        blockEntities.remove(index);
+      }
+
+      return this;
+    }
+
+    @Contract("_, _ -> this")
+    public Builder setPaletteId(int index, int id) {
+      values[index] = id + 1;
+      return this;
+    }
+
+    /**
+     * Set every index from {@code from} (inclusive) to {@code to} (exclusive) to the same palette
+     * id.
+     */
+    @Contract("_, _, _ -> this")
+    public Builder fillPaletteId(int from, int to, int id) {
+      Arrays.fill(values, from, to, id + 1);
+      return this;
+    }
+
+    @Contract("_, _, _, _ -> this")
+    public Builder setBlockEntityData(int x, int y, int z, @NotNull NbtCompound nbt) {
+      if (x >= 0 && y >= 0 && z >= 0 && x < size.getX() && y < size.getY() && z < size.getZ()) {
+        blockEntities.put(index(x, y, z), nbt);
+      }
+
+      return this;
+    }
+
+    private int index(int x, int y, int z) {
+      return x + (z * size.getX()) + (y * size.getX() * size.getZ());
+    }
+
+    public @NotNull BlueprintSchematic build() {
+      final int elementBits = Math.max(1, MathHelper.ceilLog2(palette.size() + 1));
+      final PaletteStorage storage = new PackedIntegerArray(elementBits, values.length, values);
+
+      return new BlueprintSchematic(size, offset, palette, storage, blockEntities);
+    }
+  }
+
+  /**
+   * A schematic's offsets and states rotated around the blueprint table. Blocks are numbered in the
+   * same order as the schematic's {@link #iterator()}.
+   */
+  public static final class Rotated {
+
+    private final BlockRotation rotation;
+    private final long[] offsets; // BlockPos#asLong, so there isn't an object per block
+    private final BlockState[] states;
+
+    private Rotated(@NotNull BlueprintSchematic schematic, @NotNull BlockRotation rotation) {
+      this.rotation = rotation;
+      this.offsets = new long[schematic.getBlockCount()];
+      this.states = new BlockState[schematic.getBlockCount()];
+
+      int i = 0;
+      for (BlueprintBlockInfo info : schematic) {
+        offsets[i] = info.pos().add(schematic.getOffset()).rotate(rotation).asLong();
+        states[i] = info.state().rotate(rotation);
+        i++;
+      }
+    }
+
+    public BlockRotation getRotation() {
+      return rotation;
+    }
+
+    /**
+     * @return The rotated position of the given block, relative to the table
+     * ({@link BlockPos#asLong()})
+     */
+    public long getOffset(int block) {
+      return offsets[block];
+    }
+
+    public BlockState getState(int block) {
+      return states[block];
+    }
   }
 
   /**
@@ -1,20 +1,28 @@
 package dev.michaud.pandas_blueprints.blueprint;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import dev.michaud.pandas_blueprints.PandasBlueprints;
+import dev.michaud.pandas_blueprints.blueprint.virtualelement.HologramTemplate;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.math.Vec3i;
 import net.minecraft.util.path.PathUtil;
 import net.minecraft.world.PersistentState;
 import net.minecraft.world.PersistentStateType;
@@ -29,15 +37,35 @@ public class BlueprintSchematicManager extends PersistentState {
       ".*\\.|(?:COM|CLOCK\\$|CON|PRN|AUX|NUL|COM[1-9]|LPT[1-9])(?:\\..*)?",
       Pattern.CASE_INSENSITIVE);
 
-  public static final Codec<ConcurrentMap<Identifier, BlueprintSchematic>> CONCURRENT_MAP_CODEC =
-      Codec.unboundedMap(Identifier.CODEC, BlueprintSchematic.CODEC)
+  /**
+   * Maximum number of decoded blocks (by schematic volume) kept in memory at once. Schematics are
+   * stored undecoded until they're needed, and decoded schematics are evicted least recently used
+   * first once this is exceeded.
+   */
+  public static final long MAX_CACHED_VOLUME = 1 << 22;
+
+  /**
+   * Raw schematic nbt, keyed by id. Only used for schematics that haven't made it into their own
+   * file yet (e.g. from worlds saved before schematics were stored separately).
+   */
+  public static final Codec<ConcurrentMap<Identifier, NbtCompound>> CONCURRENT_MAP_CODEC =
+      Codec.unboundedMap(Identifier.CODEC, NbtCompound.CODEC)
           .xmap(ConcurrentHashMap::new, Function.identity());
 
+  /**
+   * The persistent state itself is just an index of schematic ids. Each schematic lives in its own
+   * file.
+   *
+   * @see BlueprintSchematicStorage
+   */
   public static final Codec<BlueprintSchematicManager> CODEC = RecordCodecBuilder.create(
       instance -> instance.group(
+          Identifier.CODEC.listOf()
+              .optionalFieldOf("index", List.of())
+              .forGetter(BlueprintSchematicManager::getSchematicIds),
           CONCURRENT_MAP_CODEC
-              .fieldOf("schematics")
-              .forGetter(manager -> manager.schematicMap)
+              .optionalFieldOf("schematics", new ConcurrentHashMap<>())
+              .forGetter(manager -> manager.unsavedSchematics)
       ).apply(instance, BlueprintSchematicManager::new));
 
   public static final PersistentStateType<BlueprintSchematicManager> TYPE = new PersistentStateType<>(
@@ -47,14 +75,25 @@ public class BlueprintSchematicManager extends PersistentState {
       null
   );
 
-  private final ConcurrentMap<Identifier, BlueprintSchematic> schematicMap;
+  private final Set<Identifier> index = ConcurrentHashMap.newKeySet();
+  private final ConcurrentMap<Identifier, NbtCompound> unsavedSchematics;
+  private final Cache<Identifier, BlueprintSchematic> decodedSchematics = CacheBuilder.newBuilder()
+      .maximumWeight(MAX_CACHED_VOLUME)
+      .weigher((Identifier id, BlueprintSchematic schematic) -> getVolume(schematic))
+      .build();
+
+  private final Set<Identifier> reservedIds = new HashSet<>(); // Being saved; server thread only
+  private @Nullable BlueprintSchematicStorage storage;
 
   private BlueprintSchematicManager() {
-    this(new ConcurrentHashMap<>());
+    this(List.of(), new ConcurrentHashMap<>());
   }
 
-  private BlueprintSchematicManager(ConcurrentMap<Identifier, BlueprintSchematic> schematicMap) {
-    this.schematicMap = schematicMap;
+  private BlueprintSchematicManager(List<Identifier> index,
+      ConcurrentMap<Identifier, NbtCompound> unsavedSchematics) {
+    this.index.addAll(index);
+    this.index.addAll(unsavedSchematics.keySet());
+    this.unsavedSchematics = unsavedSchematics;
   }
 
   public static BlueprintSchematicManager getInstance(ServerWorld world) {
@@ -65,7 +104,13 @@ public class BlueprintSchematicManager extends PersistentState {
     final ServerWorld world = server.getWorld(ServerWorld.OVERWORLD);
     assert world != null;
 
-    return world.getPersistentStateManager().getOrCreate(TYPE);
+    final BlueprintSchematicManager manager = world.getPersistentStateManager().getOrCreate(TYPE);
+
+    if (manager.storage == null) {
+      manager.attachStorage(new BlueprintSchematicStorage(getDirectory(world)));
+    }
+
+    return manager;
   }
 
   public static Path getFile(ServerWorld world) {
@@ -73,42 +118,178 @@ public class BlueprintSchematicManager extends PersistentState {
   }
 
   /**
-   * Get a schematic with the given identifier, if it exists.
+   * @return The directory that individual schematic files are stored in, next to
+   * {@link #getFile(ServerWorld)}.
+   */
+  public static Path getDirectory(ServerWorld world) {
+    return getFile(world).resolveSibling(TYPE.id());
+  }
+
+  /**
+   * Start using the given storage, and move any schematics that are still stored in the persistent
+   * state into their own files.
+   */
+  private synchronized void attachStorage(@NotNull BlueprintSchematicStorage storage) {
+    this.storage = storage;
+
+    if (unsavedSchematics.isEmpty()) {
+      return;
+    }
+
+    PandasBlueprints.LOGGER.info("Moving {} blueprints to {}", unsavedSchematics.size(),
+        storage.getDirectory());
+
+    unsavedSchematics.forEach((id, nbt) -> {
+      if (writeToStorage(id, nbt)) {
+        unsavedSchematics.remove(id);
+      }
+    });
+
+    markDirty();
+  }
+
+  /**
+   * Write a schematic's file. Doesn't touch the persistent state, so this is safe to call from any
+   * thread.
+   *
+   * @return True if the schematic was written to its file
+   */
+  boolean writeToStorage(@NotNull Identifier id, @NotNull NbtCompound nbt) {
+    if (storage == null) {
+      return false;
+    }
+
+    try {
+      storage.write(id, nbt);
+      return true;
+    } catch (IOException e) {
+      PandasBlueprints.LOGGER.error("Couldn't save blueprint \"{}\"", id, e);
+      return false;
+    }
+  }
+
+  private Optional<NbtCompound> readFromStorage(@NotNull Identifier id) {
+    final NbtCompound unsaved = unsavedSchematics.get(id);
+
+    if (unsaved != null) {
+      return Optional.of(unsaved);
+    }
+
+    if (storage == null) {
+      return Optional.empty();
+    }
+
+    try {
+      return storage.read(id);
+    } catch (IOException e) {
+      PandasBlueprints.LOGGER.error("Couldn't read blueprint \"{}\"", id, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Get a schematic with the given identifier, if it exists. The schematic is read and decoded the
+   * first time it's requested, and kept around until it's evicted from the cache.
    *
    * @param id The id of the schematic
-   * @return The schematic, or empty if it doesn't exist or couldn't be found
+   * @return The schematic, or empty if it doesn't exist or couldn't be decoded
    */
   public Optional<BlueprintSchematic> getSchematic(@Nullable Identifier id) {
-    if (id != null) {
-      return Optional.ofNullable(schematicMap.get(id));
+    if (id == null || !index.contains(id)) {
+      return Optional.empty();
     }
 
-    return Optional.empty();
+    final BlueprintSchematic cached = decodedSchematics.getIfPresent(id);
+
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+
+    final Optional<BlueprintSchematic> schematic = readFromStorage(id)
+        .flatMap(nbt -> BlueprintSchematic.readNbtSafe(nbt)
+            .resultOrPartial(error -> PandasBlueprints.LOGGER.error(
+                "Couldn't load blueprint \"{}\": {}", id, error)));
+
+    schematic.ifPresent(decoded -> decodedSchematics.put(id, decoded));
+    return schematic;
+  }
+
+  /**
+   * @return True if a schematic with this id exists, without reading it.
+   */
+  public boolean hasSchematic(@Nullable Identifier id) {
+    return id != null && index.contains(id);
   }
 
   public List<Identifier> getSchematicIds() {
-    return ImmutableList.sortedCopyOf(schematicMap.keySet());
+    return ImmutableList.sortedCopyOf(index);
   }
 
   /**
-   * Add a new schematic
+   * Add a new schematic. Only this schematic's file is written; the persistent state just needs to
+   * save the updated index. Must be called on the server thread.
    *
    * @param schematic The schematic to save
    * @param name      The of the blueprint
    * @return The identifier of the new schematic
+   * @see SchematicCapture#captureAndSave
    */
-  public @Nullable Identifier saveSchematic(@NotNull BlueprintSchematic schematic,
+  public @NotNull Identifier saveSchematic(@NotNull BlueprintSchematic schematic,
       @NotNull String name) {
 
-    final String namespace = PandasBlueprints.GREENPANDA_ID;
-    final Identifier identifier = getNextUnusedIdentifier(namespace, name);
+    final Identifier identifier = reserveIdentifier(name);
+    final NbtCompound nbt = schematic.writeNbtSafe();
 
-    schematicMap.put(identifier, schematic);
-    markDirty();
+    addSchematic(identifier, schematic, nbt, writeToStorage(identifier, nbt));
+    return identifier;
+  }
 
+  /**
+   * Pick the id for a schematic that's about to be saved, so nothing else takes it in the meantime.
+   * Must be called on the server thread, and followed by {@link #addSchematic} or
+   * {@link #releaseIdentifier}.
+   *
+   * @param name The name of the blueprint
+   * @return The identifier the schematic will have
+   */
+  @NotNull Identifier reserveIdentifier(@NotNull String name) {
+    final Identifier identifier = getNextUnusedIdentifier(PandasBlueprints.GREENPANDA_ID, name);
+    reservedIds.add(identifier);
     return identifier;
   }
 
+  /**
+   * Give up a reserved id, because its schematic couldn't be saved. Must be called on the server
+   * thread.
+   */
+  void releaseIdentifier(@NotNull Identifier identifier) {
+    reservedIds.remove(identifier);
+  }
+
+  /**
+   * Add a schematic (whose file has already been written, if possible) to the index. The index is
+   * part of the persistent state, so this must be called on the server thread; otherwise an
+   * autosave could clear the dirty flag right after it was set and lose the new id.
+   *
+   * @param identifier The reserved id
+   * @param schematic  The schematic
+   * @param nbt        The encoded schematic
+   * @param written    True if {@link #writeToStorage} succeeded
+   */
+  void addSchematic(@NotNull Identifier identifier, @NotNull BlueprintSchematic schematic,
+      @NotNull NbtCompound nbt, boolean written) {
+
+    if (!written) {
+      unsavedSchematics.put(identifier, nbt); // Keep it in the persistent state instead
+    }
+
+    reservedIds.remove(identifier);
+    index.add(identifier);
+    decodedSchematics.put(identifier, schematic);
+    HologramTemplate.invalidate(identifier);
+    markDirty();
+  }
+
   /**
    * Get an identifier that isn't already associated with a blueprint. If the given values are
    * already absent, the return value is equivalent to {@code Identifier.of(namespace, name)}.
@@ -124,7 +305,7 @@ public class BlueprintSchematicManager extends PersistentState {
     final String baseName = formatBlueprintName(name);
     final Identifier baseId = Identifier.of(namespace, baseName);
 
-    if (!schematicMap.containsKey(baseId)) {
+    if (!isTaken(baseId)) {
       return baseId; // We're good!
     }
 
@@ -143,11 +324,20 @@ public class BlueprintSchematicManager extends PersistentState {
     do {
       candidate = baseId.withPath(path + "_" + count);
       count += 1;
-    } while (schematicMap.containsKey(candidate));
+    } while (isTaken(candidate));
 
     return candidate;
   }
 
+  private boolean isTaken(Identifier identifier) {
+    return index.contains(identifier) || reservedIds.contains(identifier);
+  }
+
+  private static int getVolume(BlueprintSchematic schematic) {
+    final Vec3i size = schematic.getSize();
+    return size.getX() * size.getY() * size.getZ();
+  }
+
   /**
    * Format the given string so that it is a valid name.
    *
@@ -0,0 +1,92 @@
+package dev.michaud.pandas_blueprints.blueprint;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Stores each schematic in its own compressed nbt file, so that saving one schematic doesn't mean
+ * rewriting all of them. Files are laid out as {@code <directory>/<namespace>/<path>.dat}.
+ *
+ * @see BlueprintSchematicManager
+ */
+public class BlueprintSchematicStorage {
+
+  public static final String EXTENSION = ".dat";
+
+  private final Path directory;
+
+  public BlueprintSchematicStorage(@NotNull Path directory) {
+    this.directory = directory.toAbsolutePath().normalize();
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Get the file that the given schematic is stored in.
+   *
+   * @throws IOException If the id would resolve to a file outside the storage directory.
+   */
+  public Path getPath(@NotNull Identifier id) throws IOException {
+    final Path path = directory.resolve(id.getNamespace())
+        .resolve(id.getPath() + EXTENSION)
+        .normalize();
+
+    if (!path.startsWith(directory)) {
+      throw new IOException("Invalid blueprint id: " + id);
+    }
+
+    return path;
+  }
+
+  /**
+   * Read a schematic's nbt from its file.
+   *
+   * @param id The schematic id
+   * @return The raw nbt, or empty if there is no file for it.
+   * @throws IOException If the file exists but couldn't be read.
+   */
+  public Optional<NbtCompound> read(@NotNull Identifier id) throws IOException {
+    final Path path = getPath(id);
+
+    if (!Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+
+    return Optional.of(NbtIo.readCompressed(path, NbtSizeTracker.ofUnlimitedBytes()));
+  }
+
+  /**
+   * Write a schematic's nbt to its file. The file is written to a temporary file first and then
+   * moved into place, so a crash halfway through never leaves a corrupted schematic behind.
+   *
+   * @param id  The schematic id
+   * @param nbt The nbt to write
+   * @throws IOException If the file couldn't be written.
+   */
+  public void write(@NotNull Identifier id, @NotNull NbtCompound nbt) throws IOException {
+    final Path path = getPath(id);
+    Files.createDirectories(path.getParent());
+
+    final Path tempFile = Files.createTempFile(path.getParent(),
+        path.getFileName().toString(), ".tmp");
+
+    try {
+      NbtIo.writeCompressed(nbt, tempFile);
+      Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package dev.michaud.pandas_blueprints.blueprint;
+
+/**
+ * How much of a placed blueprint has been built, as counts of each kind of match.
+ *
+ * @param total     The number of blocks in the blueprint
+ * @param exact     Blocks that are built exactly as in the blueprint
+ * @param blockOnly Blocks that are the right block, but in the wrong state (e.g. rotated)
+ * @param missing   Blocks that haven't been built yet
+ * @param wrong     Blocks where a different block was placed
+ */
+public record BuildProgress(int total, int exact, int blockOnly, int missing, int wrong) {
+
+  /**
+   * @return The fraction of blocks that are built exactly, from 0 to 1
+   */
+  public float getCompletion() {
+    return total == 0 ? 1 : (float) exact / total;
+  }
+
+  public boolean isComplete() {
+    return exact == total;
+  }
+
+  /**
+   * @return The redstone signal for this progress
+   * @see #getComparatorOutput(int, int)
+   */
+  public int getComparatorOutput() {
+    return getComparatorOutput(exact, total);
+  }
+
+  /**
+   * Get the redstone signal for the given progress. Any placed blueprint gives at least 1, and only
+   * a complete one gives 15.
+   *
+   * @param exact The number of blocks built exactly
+   * @param total The number of blocks in the blueprint
+   */
+  public static int getComparatorOutput(int exact, int total) {
+    if (exact >= total) {
+      return 15;
+    }
+
+    return 1 + (int) (14L * exact / total);
+  }
+
+}
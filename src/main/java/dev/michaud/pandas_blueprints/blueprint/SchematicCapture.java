@@ -0,0 +1,249 @@
+package dev.michaud.pandas_blueprints.blueprint;
+
+import com.google.common.base.Stopwatch;
+import dev.michaud.pandas_blueprints.PandasBlueprints;
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
+import dev.michaud.pandas_blueprints.metrics.SchematicCaptureEvent;
+import dev.michaud.pandas_blueprints.tags.ModBlockTags;
+import dev.michaud.pandas_blueprints.util.BoxDetector;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanMap;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Captures schematics without stalling the server thread. Capturing happens in three steps:
+ * <ol>
+ *   <li>On the server thread, the block states of every chunk section touching the box are copied,
+ *   along with the data of any block entities inside it ({@link #snapshot}).</li>
+ *   <li>On a worker thread, the copies are turned into a schematic, which is then encoded and
+ *   written to its file ({@link Snapshot#toSchematic()}).</li>
+ *   <li>Back on the server thread, the schematic is added to the index, which is part of the
+ *   persistent state.</li>
+ * </ol>
+ * Copying a section's block states is just copying its palette and packed data, which is much
+ * cheaper than looking up each position in the world. Sections that are all air aren't copied at
+ * all, and sections that only contain {@link ModBlockTags#BLUEPRINT_IGNORES ignored} states are
+ * skipped without looking at each position.
+ */
+public class SchematicCapture {
+
+  /**
+   * Capture the blocks in the given box and save them as a new schematic.
+   *
+   * @param name     The name to use for the schematic
+   * @param world    The world where the blocks are
+   * @param box      The bounding box to save
+   * @param tablePos The position of the blueprint table
+   * @return A future that completes on the server thread with the id of the saved schematic.
+   */
+  public static CompletableFuture<Identifier> captureAndSave(@NotNull String name,
+      @NotNull ServerWorld world, @NotNull BlockBox box, @NotNull BlockPos tablePos) {
+
+    final Snapshot snapshot = snapshot(world, box, tablePos);
+    final MinecraftServer server = world.getServer();
+    final BlueprintSchematicManager manager = BlueprintSchematicManager.getInstance(server);
+    final Identifier id = manager.reserveIdentifier(name);
+    final Executor executor = Util.getMainWorkerExecutor();
+
+    return CompletableFuture.supplyAsync(() -> {
+          final SchematicCaptureEvent event = new SchematicCaptureEvent();
+          event.begin();
+
+          final Stopwatch stopwatch = Stopwatch.createStarted();
+          final BlueprintSchematic schematic = snapshot.toSchematic();
+          final long nanos = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+
+          ModMetrics.CAPTURE_TIME.record(nanos);
+          ModMetrics.CAPTURE_BLOCKS.record(schematic.getBlockCount());
+
+          event.sections = snapshot.sections().size();
+          event.blocks = schematic.getBlockCount();
+          event.commit();
+
+          PandasBlueprints.LOGGER.debug("Captured {} blocks ({} sections) in {}ms",
+              schematic.getBlockCount(), snapshot.sections().size(), nanos / 1_000_000);
+
+          // Encoding and writing the file happen here too; only the index needs the server thread
+          final NbtCompound nbt = schematic.writeNbtSafe();
+          return new Encoded(schematic, nbt, manager.writeToStorage(id, nbt));
+        }, executor)
+        .handleAsync((encoded, throwable) -> {
+          if (throwable != null) {
+            manager.releaseIdentifier(id);
+            throw throwable instanceof CompletionException e ? e
+                : new CompletionException(throwable);
+          }
+
+          manager.addSchematic(id, encoded.schematic(), encoded.nbt(), encoded.written());
+          return id;
+        }, server);
+  }
+
+  /**
+   * A schematic, encoded and (if possible) written to its file on a worker thread
+   */
+  private record Encoded(BlueprintSchematic schematic, NbtCompound nbt, boolean written) {
+
+  }
+
+  /**
+   * Copy everything needed to create a schematic. Must be called on the server thread.
+   *
+   * @param world    The world
+   * @param box      The bounding box to save
+   * @param tablePos The position of the blueprint table
+   * @return A snapshot that can be turned into a schematic on any thread
+   */
+  @Contract(value = "_, _, _ -> new", pure = true)
+  public static @NotNull Snapshot snapshot(@NotNull World world, @NotNull BlockBox box,
+      @NotNull BlockPos tablePos) {
+
+    final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+    final Long2ObjectMap<NbtCompound> blockEntities = new Long2ObjectOpenHashMap<>();
+
+    final int minSectionX = ChunkSectionPos.getSectionCoord(box.getMinX());
+    final int minSectionY = ChunkSectionPos.getSectionCoord(box.getMinY());
+    final int minSectionZ = ChunkSectionPos.getSectionCoord(box.getMinZ());
+    final int maxSectionX = ChunkSectionPos.getSectionCoord(box.getMaxX());
+    final int maxSectionY = ChunkSectionPos.getSectionCoord(box.getMaxY());
+    final int maxSectionZ = ChunkSectionPos.getSectionCoord(box.getMaxZ());
+
+    for (int chunkX = minSectionX; chunkX <= maxSectionX; chunkX++) {
+      for (int chunkZ = minSectionZ; chunkZ <= maxSectionZ; chunkZ++) {
+
+        final WorldChunk chunk = world.getChunk(chunkX, chunkZ);
+        final ChunkSection[] chunkSections = chunk.getSectionArray();
+
+        for (int sectionY = minSectionY; sectionY <= maxSectionY; sectionY++) {
+          final int index = chunk.sectionCoordToIndex(sectionY);
+
+          if (index < 0 || index >= chunkSections.length || chunkSections[index].isEmpty()) {
+            continue; // Outside the world, or nothing but air
+          }
+
+          sections.put(ChunkSectionPos.asLong(chunkX, sectionY, chunkZ),
+              chunkSections[index].getBlockStateContainer().copy());
+        }
+
+        for (Map.Entry<BlockPos, BlockEntity> entry : chunk.getBlockEntities().entrySet()) {
+          final BlockPos pos = entry.getKey();
+
+          if (box.contains(pos) && !pos.equals(tablePos)) {
+            final NbtCompound nbt = BlueprintSchematic.BlueprintBlockInfo
+                .createBlockEntityData(entry.getValue());
+
+            if (nbt != null) {
+              blockEntities.put(pos.asLong(), nbt);
+            }
+          }
+        }
+      }
+    }
+
+    return new Snapshot(box, tablePos.toImmutable(), sections, blockEntities);
+  }
+
+  /**
+   * A copy of the blocks in an area of the world.
+   *
+   * @param box           The bounding box to save
+   * @param tablePos      The position of the blueprint table (which is left out)
+   * @param sections      Copies of the block states of each chunk section, keyed by
+   *                      {@link ChunkSectionPos#asLong(int, int, int)}
+   * @param blockEntities Block entity data, keyed by {@link BlockPos#asLong()}
+   */
+  public record Snapshot(@NotNull BlockBox box, @NotNull BlockPos tablePos,
+                         @NotNull Long2ObjectMap<PalettedContainer<BlockState>> sections,
+                         @NotNull Long2ObjectMap<NbtCompound> blockEntities) {
+
+    /**
+     * Build a schematic from this snapshot. Safe to call from any thread.
+     */
+    public @NotNull BlueprintSchematic toSchematic() {
+      final BlockPos minCorner = BoxDetector.getMinPos(box);
+      final Vec3i size = BoxDetector.getSize(box);
+      final BlockPos offset = minCorner.subtract(tablePos);
+      final BlueprintSchematic.Builder builder = new BlueprintSchematic.Builder(size, offset);
+
+      // Checking a tag is a lot slower than a map lookup, and there are only a few unique states
+      final Reference2BooleanMap<BlockState> ignored = new Reference2BooleanOpenHashMap<>();
+      final Predicate<BlockState> isIgnored = state -> {
+        if (!ignored.containsKey(state)) {
+          ignored.put(state, state.isIn(ModBlockTags.BLUEPRINT_IGNORES));
+        }
+
+        return ignored.getBoolean(state);
+      };
+
+      for (Long2ObjectMap.Entry<PalettedContainer<BlockState>> entry
+          : sections.long2ObjectEntrySet()) {
+
+        final PalettedContainer<BlockState> section = entry.getValue();
+
+        if (!section.hasAny(isIgnored.negate())) {
+          continue; // Nothing to save here
+        }
+
+        final long sectionPos = entry.getLongKey();
+        final int originX = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(sectionPos));
+        final int originY = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(sectionPos));
+        final int originZ = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(sectionPos));
+
+        // Part of the box inside this section
+        final int minX = Math.max(box.getMinX(), originX);
+        final int minY = Math.max(box.getMinY(), originY);
+        final int minZ = Math.max(box.getMinZ(), originZ);
+        final int maxX = Math.min(box.getMaxX(), originX + 15);
+        final int maxY = Math.min(box.getMaxY(), originY + 15);
+        final int maxZ = Math.min(box.getMaxZ(), originZ + 15);
+
+        for (int y = minY; y <= maxY; y++) {
+          for (int z = minZ; z <= maxZ; z++) {
+            for (int x = minX; x <= maxX; x++) {
+
+              final BlockState state = section.get(x & 15, y & 15, z & 15);
+
+              if (isIgnored.test(state) || isTablePos(x, y, z)) {
+                continue;
+              }
+
+              builder.set(x - minCorner.getX(), y - minCorner.getY(), z - minCorner.getZ(), state,
+                  blockEntities.get(BlockPos.asLong(x, y, z)));
+            }
+          }
+        }
+      }
+
+      return builder.build();
+    }
+
+    private boolean isTablePos(int x, int y, int z) {
+      return x == tablePos.getX() && y == tablePos.getY() && z == tablePos.getZ();
+    }
+  }
+
+}
@@ -2,7 +2,8 @@ package dev.michaud.pandas_blueprints.blueprint.virtualelement;
 
 import com.google.common.collect.ImmutableList;
 import dev.michaud.pandas_blueprints.PandasBlueprints;
-import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic.BlueprintBlockInfo;
+import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic;
+import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic.Rotated;
 import dev.michaud.pandas_blueprints.blueprint.virtualelement.BlueprintHighlight.BlockStateMatch;
 import dev.michaud.pandas_blueprints.util.RotationHelper;
 import eu.pb4.polymer.core.api.block.PolymerBlock;
@@ -28,6 +29,7 @@ import net.minecraft.util.BlockRotation;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class BlueprintBlockDisplay extends BlockDisplayElement {
 
@@ -41,18 +43,40 @@ public class BlueprintBlockDisplay extends BlockDisplayElement {
           HangingSignBlock.class, BannerBlock.class, ShulkerBoxBlock.class));
 
   public final boolean useCustomTransformation;
-  public final BlueprintBlockInfo blockInfo;
+  public final BlockState blueprintState; // Unrotated
   public final BlockPos tableOffset;
 
+  private final BlueprintSchematic schematic;
+  private final int blockIndex; // Index into the schematic's rotated blocks
+
   private BlockStateMatch match = BlockStateMatch.NO_BLOCK_MATCH;
   private BlockRotation rotation = BlockRotation.NONE; // Rotation around the table pos
+  private Rotated rotated;
+
+  // Cached so getOffset doesn't allocate every tick
+  private Vec3d offset;
+  private Vec3d centerOffset;
+
+  // What the display currently shows
+  private @Nullable BlockStateMatch renderedMatch = null;
+  private @Nullable BlockRotation renderedRotation = null;
+
+  /**
+   * @param schematic  The schematic the block is from
+   * @param state      The block's unrotated state
+   * @param blockIndex The block's position in the schematic's iteration order
+   */
+  public BlueprintBlockDisplay(@NotNull BlueprintSchematic schematic, @NotNull BlockState state,
+      int blockIndex) {
+    super(state);
 
-  public BlueprintBlockDisplay(@NotNull BlueprintBlockInfo blockInfo, @NotNull BlockPos tableOffset) {
-    super(blockInfo.state());
+    this.blueprintState = state;
+    this.useCustomTransformation = doesBlockEntityIgnoreRotation(state.getBlock());
+    this.tableOffset = schematic.getOffset();
+    this.schematic = schematic;
+    this.blockIndex = blockIndex;
 
-    this.blockInfo = blockInfo;
-    this.useCustomTransformation = doesBlockEntityIgnoreRotation(blockInfo.state().getBlock());
-    this.tableOffset = tableOffset;
+    applyRotation();
 
     setBrightness(new Brightness(15, 15));
     setShadowRadius(0);
@@ -63,16 +87,21 @@ public class BlueprintBlockDisplay extends BlockDisplayElement {
 
     if (getBlockState() == null) {
       PandasBlueprints.LOGGER.warn("Block display state set to null! That shouldn't happen...");
-      setBlockState(blockInfo.state()); // Default
+      setBlockState(blueprintState); // Default
+      renderedMatch = null;
       return;
     }
 
-    final BlockState state = getBlueprintBlockState();
+    // Only touch tracked data when something changed, so a static hologram sends nothing
+    if (match != renderedMatch || rotation != renderedRotation) {
+      if (match == BlockStateMatch.AIR) {
+        setRender(getBlueprintBlockState());
+      } else {
+        setStopRendering();
+      }
 
-    if (match == BlockStateMatch.AIR) {
-      setRender(state);
-    } else {
-      setStopRendering();
+      renderedMatch = match;
+      renderedRotation = rotation;
     }
 
     super.tick();
@@ -94,17 +123,22 @@ public class BlueprintBlockDisplay extends BlockDisplayElement {
 
   @Override
   public Vec3d getOffset() {
-    return Vec3d.of(getBlockOffset());
+    return offset;
+  }
+
+  /**
+   * @return The offset of the center of the block
+   */
+  public Vec3d getCenterOffset() {
+    return centerOffset;
   }
 
   public BlockPos getBlockOffset() {
-    return blockInfo.pos()
-        .add(tableOffset)
-        .rotate(rotation);
+    return BlockPos.fromLong(rotated.getOffset(blockIndex));
   }
 
   public BlockState getBlueprintBlockState() {
-    return blockInfo.state().rotate(rotation);
+    return rotated.getState(blockIndex);
   }
 
   public BlockStateMatch getMatch() {
@@ -122,9 +156,16 @@ public class BlueprintBlockDisplay extends BlockDisplayElement {
   public void setRotation(BlockRotation newRotation) {
     if (rotation != newRotation) {
       rotation = newRotation;
+      applyRotation();
     }
   }
 
+  private void applyRotation() {
+    rotated = schematic.getRotated(rotation);
+    offset = Vec3d.of(getBlockOffset());
+    centerOffset = offset.add(0.5, 0.5, 0.5);
+  }
+
   /**
    * Check if the given block has a block entity that ignores the block state rotation when
    * displayed using a BlockDisplayEntity (such as chests, skulls, etc.)
@@ -13,6 +13,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.Vec3d;
+import org.jetbrains.annotations.Nullable;
 
 public class BlueprintHighlight extends ItemDisplayElement {
 
@@ -71,6 +72,7 @@ public class BlueprintHighlight extends ItemDisplayElement {
   }
 
   private final BlueprintBlockDisplay blockDisplay;
+  private @Nullable BlockStateMatch renderedMatch = null; // What the highlight currently shows
 
   public BlueprintHighlight(BlueprintBlockDisplay blockDisplay) {
     this.blockDisplay = blockDisplay;
@@ -83,15 +85,18 @@ public class BlueprintHighlight extends ItemDisplayElement {
   public void tick() {
 
     final BlockStateMatch match = blockDisplay.getMatch();
-    final ItemStack item = DISPLAY_ITEM_FOR_MATCH.get(match);
 
-    setItem(item);
+    if (match != renderedMatch) {
+      setItem(DISPLAY_ITEM_FOR_MATCH.get(match));
 
-    if (match.color != null) {
-      setGlowing(true);
-      setGlowColorOverride(match.color);
-    } else {
-      setGlowing(false);
+      if (match.color != null) {
+        setGlowing(true);
+        setGlowColorOverride(match.color);
+      } else {
+        setGlowing(false);
+      }
+
+      renderedMatch = match;
     }
 
     super.tick();
@@ -99,7 +104,7 @@ public class BlueprintHighlight extends ItemDisplayElement {
 
   @Override
   public Vec3d getOffset() {
-    return blockDisplay.getOffset().add(0.5, 0.5, 0.5);
+    return blockDisplay.getCenterOffset();
   }
 
   private static ItemStack buildDisplayItemForMatch(BlockStateMatch match) {
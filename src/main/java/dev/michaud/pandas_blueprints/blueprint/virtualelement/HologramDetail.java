@@ -0,0 +1,32 @@
+package dev.michaud.pandas_blueprints.blueprint.virtualelement;
+
+/**
+ * How much of a hologram a player is shown, from least to most detailed.
+ *
+ * @see HologramVisibilityManager
+ * @see VirtualSchematicDisplayElement#getHolders(HologramDetail)
+ */
+public enum HologramDetail {
+  /**
+   * Just the edges of the bounding box
+   */
+  OUTLINE,
+  /**
+   * Highlights merged into as few boxes as possible, without any block displays
+   */
+  MERGED,
+  /**
+   * A block display and highlight for each block that isn't hidden behind other blocks in the
+   * schematic
+   */
+  SURFACE,
+  /**
+   * A block display and highlight for each block, including hidden blocks once something has been
+   * built next to them
+   */
+  FULL;
+
+  public boolean isMoreDetailedThan(HologramDetail other) {
+    return ordinal() > other.ordinal();
+  }
+}
@@ -0,0 +1,47 @@
+package dev.michaud.pandas_blueprints.blueprint.virtualelement;
+
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
+import eu.pb4.polymer.virtualentity.api.ElementHolder;
+import eu.pb4.polymer.virtualentity.api.attachment.ManualAttachment;
+import java.util.function.Supplier;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Vec3d;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * One part of a hologram, attached at the blueprint table. Which parts a player watches depends on
+ * how far away they are.
+ *
+ * @see VirtualSchematicDisplayElement#getHolders(HologramDetail)
+ */
+public class HologramPartHolder extends ElementHolder {
+
+  private final ManualAttachment attachment;
+  private long packetsSent = 0;
+
+  public HologramPartHolder(@NotNull ServerWorld world, @NotNull Supplier<Vec3d> posSupplier) {
+    this.attachment = new ManualAttachment(this, world, posSupplier);
+  }
+
+  @Override
+  public void sendPacket(Packet<? extends ClientPlayPacketListener> packet) {
+    packetsSent += getWatchingPlayers().size();
+    ModMetrics.HOLOGRAM_PACKETS.add(getWatchingPlayers().size());
+    super.sendPacket(packet);
+  }
+
+  /**
+   * @return How many update packets this part has sent (one per packet per watching player)
+   */
+  public long getPacketsSent() {
+    return packetsSent;
+  }
+
+  @Override
+  public @NotNull ManualAttachment getAttachment() {
+    return attachment;
+  }
+
+}
@@ -0,0 +1,234 @@
+package dev.michaud.pandas_blueprints.blueprint.virtualelement;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic;
+import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic.Rotated;
+import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematicManager;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.enums.BedPart;
+import net.minecraft.state.property.Properties;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The layout of a schematic's hologram at one rotation: which blocks are shown, where they are
+ * relative to the table, and which ones are hidden behind others. Templates never change, and are
+ * shared by every table showing the same blueprint; only the matches and the elements themselves
+ * belong to each table. Everything is kept in primitive arrays, and the parts that don't depend on
+ * the rotation are shared by all four templates.
+ *
+ * @see VirtualSchematicDisplayElement
+ */
+public final class HologramTemplate {
+
+  /**
+   * Templates for each rotation, keyed by blueprint id. The schematic manager can decode the same
+   * id more than once (its cache evicts), but every copy has the same blocks, so tables showing the
+   * same id share templates. Entries are dropped if the id is saved again.
+   */
+  private static final Cache<Identifier, Templates> TEMPLATES = CacheBuilder.newBuilder()
+      .maximumWeight(BlueprintSchematicManager.MAX_CACHED_VOLUME)
+      .weigher((Identifier id, Templates templates) -> templates.layout.size())
+      .build();
+
+  private final BlockRotation rotation;
+  private final Layout layout;
+  private final long[] offsets; // Rotated, relative to the table
+  private final Long2IntMap entryByOffset;
+  private final BlockBox relativeBox;
+
+  private HologramTemplate(@NotNull BlueprintSchematic schematic, @NotNull Layout layout,
+      @NotNull BlockRotation rotation) {
+
+    final Rotated rotated = schematic.getRotated(rotation);
+
+    this.rotation = rotation;
+    this.layout = layout;
+    this.offsets = new long[layout.size()];
+    this.entryByOffset = new Long2IntOpenHashMap(layout.size());
+    this.entryByOffset.defaultReturnValue(-1);
+
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = rotated.getOffset(layout.blockIndices()[i]);
+      entryByOffset.put(offsets[i], i);
+    }
+
+    final BlockPos offset = schematic.getOffset();
+    final BlockPos maxCorner = offset.add(schematic.getSize()).add(-1, -1, -1);
+    this.relativeBox = BlockBox.create(offset.rotate(rotation), maxCorner.rotate(rotation));
+  }
+
+  /**
+   * Get the template for the given blueprint and rotation, creating it if needed.
+   *
+   * @param id        The blueprint's id
+   * @param schematic The blueprint's schematic
+   * @param rotation  The rotation
+   */
+  public static @NotNull HologramTemplate get(@NotNull Identifier id,
+      @NotNull BlueprintSchematic schematic, @NotNull BlockRotation rotation) {
+
+    final Templates templates;
+
+    try {
+      templates = TEMPLATES.get(id, () -> new Templates(Layout.of(schematic)));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Couldn't create the hologram of " + id, e.getCause());
+    }
+
+    synchronized (templates) {
+      final int index = rotation.ordinal();
+
+      if (templates.byRotation[index] == null) {
+        templates.byRotation[index] = new HologramTemplate(schematic, templates.layout, rotation);
+      }
+
+      return templates.byRotation[index];
+    }
+  }
+
+  /**
+   * Forget the templates of the given blueprint, because it was saved again
+   */
+  public static void invalidate(@NotNull Identifier id) {
+    TEMPLATES.invalidate(id);
+  }
+
+  /**
+   * Air and the foot of a bed (which is rendered by the head) don't get a display
+   */
+  private static boolean isShown(BlockState state) {
+    if (state.isAir()) {
+      return false;
+    }
+
+    return !state.contains(Properties.BED_PART)
+        || state.get(Properties.BED_PART) != BedPart.FOOT;
+  }
+
+  public BlockRotation getRotation() {
+    return rotation;
+  }
+
+  /**
+   * @return The number of shown blocks. Entries are numbered from 0 to this (exclusive).
+   */
+  public int size() {
+    return layout.size();
+  }
+
+  /**
+   * @return The block's index in the schematic's iteration order, for
+   * {@link BlueprintSchematic#getRotated(BlockRotation)}
+   */
+  public int getBlockIndex(int entry) {
+    return layout.blockIndices()[entry];
+  }
+
+  /**
+   * @return The block's unrotated packed index in the schematic
+   * @see BlueprintSchematic#index(int, int, int)
+   */
+  public int getPackedIndex(int entry) {
+    return layout.packedIndices()[entry];
+  }
+
+  /**
+   * @return The block's rotated position relative to the table ({@link BlockPos#asLong()})
+   */
+  public long getOffset(int entry) {
+    return offsets[entry];
+  }
+
+  /**
+   * @return True if the block is hidden from every side by other blocks in the schematic
+   */
+  public boolean isConcealed(int entry) {
+    return layout.concealed().get(entry);
+  }
+
+  /**
+   * @param offset A rotated position relative to the table ({@link BlockPos#asLong()})
+   * @return The entry at that position, or -1 if there is none
+   */
+  public int getEntry(long offset) {
+    return entryByOffset.get(offset);
+  }
+
+  /**
+   * @return The exact box the schematic's blocks take up, relative to the table
+   */
+  public BlockBox getRelativeBox() {
+    return relativeBox;
+  }
+
+  /**
+   * The templates of one blueprint, which all share the same layout
+   */
+  private static final class Templates {
+
+    private final Layout layout;
+    private final HologramTemplate[] byRotation;
+
+    private Templates(Layout layout) {
+      this.layout = layout;
+      this.byRotation = new HologramTemplate[BlockRotation.values().length];
+    }
+  }
+
+  /**
+   * Which blocks are shown, in entry order. This doesn't depend on the rotation.
+   *
+   * @param blockIndices  Each entry's index in the schematic's iteration order
+   * @param packedIndices Each entry's packed index (see {@link BlueprintSchematic#index})
+   * @param concealed     Entries hidden from every side by other blocks
+   */
+  private record Layout(int[] blockIndices, int[] packedIndices, BitSet concealed) {
+
+    private static Layout of(BlueprintSchematic schematic) {
+      final IntList blockIndices = new IntArrayList();
+      final IntList packedIndices = new IntArrayList();
+      final BitSet concealed = new BitSet();
+      final Vec3i size = schematic.getSize();
+      final int volume = size.getX() * size.getY() * size.getZ();
+
+      int blockIndex = -1;
+      for (int index = 0; index < volume; index++) {
+        final BlockState state = schematic.getBlockState(index);
+
+        if (state == null) {
+          continue;
+        }
+
+        blockIndex++;
+
+        if (isShown(state)) {
+          if (schematic.isOccluded(index)) {
+            concealed.set(blockIndices.size());
+          }
+
+          blockIndices.add(blockIndex);
+          packedIndices.add(index);
+        }
+      }
+
+      return new Layout(blockIndices.toIntArray(), packedIndices.toIntArray(), concealed);
+    }
+
+    private int size() {
+      return blockIndices.length;
+    }
+  }
+
+}
@@ -0,0 +1,239 @@
+package dev.michaud.pandas_blueprints.blueprint.virtualelement;
+
+import dev.michaud.pandas_blueprints.metrics.HologramTickEvent;
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps track of the holograms in a world. Once per server tick, every world's holograms are ticked
+ * together, sharing one budget of block comparisons. Holograms take turns (round-robin), and the
+ * world that goes first changes every tick, so one huge hologram can't starve the others. Holograms
+ * nobody is near are only ticked every {@link #IDLE_TICK_INTERVAL} ticks. When the server is
+ * behind, the budget shrinks so holograms don't compete with gameplay.
+ */
+public class HologramTickScheduler {
+
+  /**
+   * How many blocks can be compared to the world each tick, across every hologram in every world
+   */
+  public static final int MAX_COMPARISONS_PER_TICK = 8192;
+
+  /**
+   * The smallest the budget gets while the server is lagging, so holograms still catch up slowly
+   */
+  public static final int MIN_COMPARISONS_PER_TICK = 512;
+
+  /**
+   * How often (in ticks) holograms that nobody can see are ticked
+   */
+  public static final int IDLE_TICK_INTERVAL = 20;
+
+  /**
+   * The fraction of the tick time the server can use before the budget starts shrinking
+   */
+  public static final double BACKOFF_THRESHOLD = 0.8;
+
+  private static final Map<ServerWorld, HologramTickScheduler> SCHEDULERS =
+      new IdentityHashMap<>();
+
+  private final List<VirtualSchematicDisplayElement> holograms = new ArrayList<>();
+  private int cursor = 0; // The hologram that gets the budget first next tick
+  private int ticks = 0;
+
+  private int lastComparisons = 0;
+
+  private static int worldCursor = 0; // The world that gets the budget first next tick
+  private static int lastBudget = MAX_COMPARISONS_PER_TICK;
+  private static int lastTotalComparisons = 0;
+
+  public static void registerEvents() {
+    ServerTickEvents.END_SERVER_TICK.register(HologramTickScheduler::tickAll);
+
+    ServerWorldEvents.UNLOAD.register((server, world) -> SCHEDULERS.remove(world));
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> SCHEDULERS.clear());
+  }
+
+  public static @NotNull HologramTickScheduler get(@NotNull ServerWorld world) {
+    return SCHEDULERS.computeIfAbsent(world, w -> new HologramTickScheduler());
+  }
+
+  /**
+   * Like {@link #get}, but doesn't create a scheduler for a world that has none (e.g. one that was
+   * already unloaded)
+   */
+  public static @Nullable HologramTickScheduler getIfPresent(@NotNull ServerWorld world) {
+    return SCHEDULERS.get(world);
+  }
+
+  public void add(@NotNull VirtualSchematicDisplayElement hologram) {
+    if (!holograms.contains(hologram)) {
+      holograms.add(hologram);
+    }
+  }
+
+  public void remove(@NotNull VirtualSchematicDisplayElement hologram) {
+    final int index = holograms.indexOf(hologram);
+
+    if (index >= 0) {
+      holograms.remove(index);
+
+      if (index < cursor) {
+        cursor--;
+      }
+    }
+  }
+
+  /**
+   * Tick the holograms in every world, sharing one budget between them
+   */
+  private static void tickAll(MinecraftServer server) {
+    final List<HologramTickScheduler> schedulers = new ArrayList<>(SCHEDULERS.values());
+    final int count = schedulers.size();
+    final int budget = getBudget(server);
+    int remaining = budget;
+
+    for (int i = 0; i < count; i++) {
+      remaining -= schedulers.get((worldCursor + i) % count).tick(remaining);
+    }
+
+    worldCursor = count == 0 ? 0 : (worldCursor + 1) % count;
+    lastBudget = budget;
+    lastTotalComparisons = budget - Math.max(remaining, 0);
+
+    if (count > 0) {
+      ModMetrics.HOLOGRAM_COMPARISONS.record(lastTotalComparisons);
+    }
+  }
+
+  /**
+   * Tick the holograms in this world
+   *
+   * @param budget How many comparisons are left this tick
+   * @return How many comparisons were made
+   */
+  private int tick(int budget) {
+    ticks++;
+
+    final int count = holograms.size();
+    int remaining = budget;
+    int nextCursor = cursor;
+
+    for (int i = 0; i < count; i++) {
+      final int index = (cursor + i) % count;
+      final VirtualSchematicDisplayElement hologram = holograms.get(index);
+
+      if (hologram.isIdle() && ticks % IDLE_TICK_INTERVAL != 0) {
+        continue;
+      }
+
+      if (remaining <= 0) {
+        tickHologram(hologram, 0); // Still update elements, just don't compare anything
+        continue;
+      }
+
+      remaining -= tickHologram(hologram, remaining);
+      nextCursor = index + 1; // Whoever comes after the last one to use the budget goes first
+    }
+
+    cursor = count == 0 ? 0 : nextCursor % count;
+    lastComparisons = Math.max(budget, 0) - Math.max(remaining, 0);
+
+    return lastComparisons;
+  }
+
+  /**
+   * Tick a hologram, and record how long it took
+   *
+   * @return How many blocks it compared
+   */
+  private static int tickHologram(VirtualSchematicDisplayElement hologram, int maxComparisons) {
+    final HologramTickEvent event = new HologramTickEvent();
+    event.begin();
+
+    final long start = System.nanoTime();
+    final int comparisons = hologram.tick(maxComparisons);
+    final long nanos = System.nanoTime() - start;
+
+    ModMetrics.HOLOGRAM_TICK_TIME.record(nanos);
+    hologram.getTickTime().record(nanos);
+
+    event.end();
+    if (event.shouldCommit()) {
+      final BlockPos pos = hologram.getTablePos();
+      event.tableX = pos.getX();
+      event.tableY = pos.getY();
+      event.tableZ = pos.getZ();
+      event.budget = maxComparisons;
+      event.comparisons = comparisons;
+      event.commit();
+    }
+
+    return comparisons;
+  }
+
+  /**
+   * @return The number of comparisons holograms can make this tick. If the server's average tick
+   * takes longer than {@link #BACKOFF_THRESHOLD} of the target, the budget shrinks in proportion.
+   */
+  private static int getBudget(MinecraftServer server) {
+    final double targetNanos = server.getTickManager().getNanosPerTick();
+    final double load = server.getAverageNanosPerTick() / targetNanos;
+
+    if (load <= BACKOFF_THRESHOLD) {
+      return MAX_COMPARISONS_PER_TICK;
+    }
+
+    // Scales linearly from the full budget at the threshold to the minimum at 100%
+    final double scale = Math.max(0, (1 - load) / (1 - BACKOFF_THRESHOLD));
+    return Math.max(MIN_COMPARISONS_PER_TICK, (int) (MAX_COMPARISONS_PER_TICK * scale));
+  }
+
+  /**
+   * @return The budget of the last tick, shared by every world
+   */
+  public static int getLastBudget() {
+    return lastBudget;
+  }
+
+  /**
+   * @return How much of the last tick's budget was used, by every world together
+   */
+  public static int getLastTotalComparisons() {
+    return lastTotalComparisons;
+  }
+
+  /**
+   * @return How much of the last tick's budget was used by this world
+   */
+  public int getLastComparisons() {
+    return lastComparisons;
+  }
+
+  public int getHologramCount() {
+    return holograms.size();
+  }
+
+  public @NotNull List<VirtualSchematicDisplayElement> getHolograms() {
+    return Collections.unmodifiableList(holograms);
+  }
+
+  /**
+   * @return The schedulers of every world that has holograms
+   */
+  public static @NotNull Map<ServerWorld, HologramTickScheduler> getSchedulers() {
+    return Collections.unmodifiableMap(SCHEDULERS);
+  }
+
+}
@@ -0,0 +1,324 @@
+package dev.michaud.pandas_blueprints.blueprint.virtualelement;
+
+import eu.pb4.polymer.virtualentity.api.ElementHolder;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.MathHelper;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decides which players can see which holograms in a world, and in how much detail. Each hologram
+ * has a few areas where it is visible (each with a {@link HologramDetail}), which are indexed by
+ * chunk section. A player sees the most detailed level of any area they're in.
+ * <p>
+ * A player's holograms are only recomputed when they move into another section, when the holograms
+ * change, or, in sections that an area only partly covers, when they move to another block. A
+ * player standing still (or walking around far away from any hologram) costs nothing.
+ * <p>
+ * All {@link ElementHolder#startWatching} and {@link ElementHolder#stopWatching} calls are made
+ * together at the end of the world tick.
+ */
+public class HologramVisibilityManager {
+
+  private static final Map<ServerWorld, HologramVisibilityManager> MANAGERS =
+      new IdentityHashMap<>();
+
+  private final Map<VirtualSchematicDisplayElement, Entry> holograms = new IdentityHashMap<>();
+  private final Long2ObjectMap<List<Entry>> sectionIndex = new Long2ObjectOpenHashMap<>();
+  private final Map<ServerPlayerEntity, PlayerState> players = new IdentityHashMap<>();
+
+  /**
+   * Incremented whenever a hologram is added, moved or removed, so players know to recompute.
+   */
+  private int version = 0;
+
+  public static void registerEvents() {
+    ServerTickEvents.END_WORLD_TICK.register(world -> {
+      final HologramVisibilityManager manager = MANAGERS.get(world);
+
+      if (manager != null) {
+        manager.tick(world);
+      }
+    });
+
+    ServerWorldEvents.UNLOAD.register((server, world) -> MANAGERS.remove(world));
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> MANAGERS.clear());
+  }
+
+  public static @NotNull HologramVisibilityManager get(@NotNull ServerWorld world) {
+    return MANAGERS.computeIfAbsent(world, w -> new HologramVisibilityManager());
+  }
+
+  /**
+   * Like {@link #get}, but doesn't create a manager for a world that has none (e.g. one that was
+   * already unloaded)
+   */
+  public static @Nullable HologramVisibilityManager getIfPresent(@NotNull ServerWorld world) {
+    return MANAGERS.get(world);
+  }
+
+  /**
+   * An area where players can see a hologram. A player is in the area if their bounding box
+   * intersects it.
+   *
+   * @param box    The area
+   * @param detail How much of the hologram players in the area see
+   */
+  public record Area(@NotNull Box box, @NotNull HologramDetail detail) {
+
+  }
+
+  /**
+   * Add a hologram, or move it if it was already added.
+   *
+   * @param hologram The hologram
+   * @param areas    The areas where players can see it
+   */
+  public void update(@NotNull VirtualSchematicDisplayElement hologram, @NotNull List<Area> areas) {
+    removeFromIndex(hologram);
+
+    final Entry entry = new Entry(hologram, List.copyOf(areas), new LongArrayList());
+    final LongSet sections = new LongOpenHashSet();
+
+    for (Area area : areas) {
+      forEachSection(area.box(), sections::add);
+    }
+
+    entry.sections().addAll(sections);
+
+    for (long section : entry.sections()) {
+      sectionIndex.computeIfAbsent(section, s -> new ArrayList<>()).add(entry);
+    }
+
+    holograms.put(hologram, entry);
+    version++;
+  }
+
+  /**
+   * Remove a hologram. It should stop being watched by everyone separately (e.g. by destroying it).
+   */
+  public void remove(@NotNull VirtualSchematicDisplayElement hologram) {
+    if (removeFromIndex(hologram)) {
+      for (PlayerState state : players.values()) {
+        state.watching().remove(hologram);
+      }
+
+      version++;
+    }
+  }
+
+  private boolean removeFromIndex(VirtualSchematicDisplayElement hologram) {
+    final Entry entry = holograms.remove(hologram);
+
+    if (entry == null) {
+      return false;
+    }
+
+    for (long section : entry.sections()) {
+      final List<Entry> list = sectionIndex.get(section);
+
+      if (list != null) {
+        list.remove(entry);
+
+        if (list.isEmpty()) {
+          sectionIndex.remove(section);
+        }
+      }
+    }
+
+    return true;
+  }
+
+  private void tick(ServerWorld world) {
+    final List<Runnable> changes = new ArrayList<>();
+    final List<ServerPlayerEntity> worldPlayers = world.getPlayers();
+
+    // Players that left the world
+    final Iterator<Map.Entry<ServerPlayerEntity, PlayerState>> iterator =
+        players.entrySet().iterator();
+
+    while (iterator.hasNext()) {
+      final Map.Entry<ServerPlayerEntity, PlayerState> entry = iterator.next();
+      final ServerPlayerEntity player = entry.getKey();
+
+      if (player.isRemoved() || player.getWorld() != world) {
+        entry.getValue().watching().forEach((hologram, detail) -> changes.add(() ->
+            hologram.getHolders(detail).forEach(holder -> holder.stopWatching(player))));
+
+        iterator.remove();
+      }
+    }
+
+    for (ServerPlayerEntity player : worldPlayers) {
+      final PlayerState state = players.computeIfAbsent(player, p -> new PlayerState());
+      final BlockPos pos = player.getBlockPos();
+      final long section = ChunkSectionPos.toLong(pos);
+      final long blockPos = pos.asLong();
+
+      final boolean changed = state.version != version || state.section != section
+          || (state.partiallyCovered && state.blockPos != blockPos);
+
+      if (!changed) {
+        continue;
+      }
+
+      state.version = version;
+      state.section = section;
+      state.blockPos = blockPos;
+
+      updatePlayer(player, state, section, (hologram, oldDetail, newDetail) -> changes.add(() -> {
+        final List<ElementHolder> oldHolders = oldDetail == null
+            ? List.of() : hologram.getHolders(oldDetail);
+        final List<ElementHolder> newHolders = newDetail == null
+            ? List.of() : hologram.getHolders(newDetail);
+
+        // Holders in both levels are left alone
+        for (ElementHolder holder : oldHolders) {
+          if (!newHolders.contains(holder)) {
+            holder.stopWatching(player);
+          }
+        }
+
+        for (ElementHolder holder : newHolders) {
+          if (!oldHolders.contains(holder)) {
+            holder.startWatching(player);
+          }
+        }
+      }));
+    }
+
+    changes.forEach(Runnable::run);
+  }
+
+  /**
+   * Work out which holograms the player should see (and how much of them), and report any that
+   * changed.
+   */
+  private void updatePlayer(ServerPlayerEntity player, PlayerState state, long section,
+      ChangeConsumer onChange) {
+
+    final List<Entry> candidates = sectionIndex.getOrDefault(section, List.of());
+    final Box sectionBox = sectionBox(section);
+    final Box hitbox = player.getBoundingBox();
+    final Map<VirtualSchematicDisplayElement, HologramDetail> visible = new IdentityHashMap<>();
+
+    state.partiallyCovered = false;
+
+    for (Entry entry : candidates) {
+      HologramDetail detail = null;
+
+      for (Area area : entry.areas()) {
+        final boolean isInArea;
+
+        if (contains(area.box(), sectionBox)) {
+          isInArea = true; // Anywhere in this section is in the area
+        } else {
+          state.partiallyCovered = true;
+          isInArea = area.box().intersects(hitbox);
+        }
+
+        if (isInArea && (detail == null || area.detail().isMoreDetailedThan(detail))) {
+          detail = area.detail();
+        }
+      }
+
+      if (detail != null) {
+        visible.put(entry.hologram(), detail);
+      }
+    }
+
+    state.watching().forEach((hologram, oldDetail) -> {
+      if (!visible.containsKey(hologram)) {
+        onChange.accept(hologram, oldDetail, null);
+      }
+    });
+
+    visible.forEach((hologram, newDetail) -> {
+      final HologramDetail oldDetail = state.watching().get(hologram);
+
+      if (oldDetail != newDetail) {
+        onChange.accept(hologram, oldDetail, newDetail);
+      }
+    });
+
+    state.watching().clear();
+    state.watching().putAll(visible);
+  }
+
+  @FunctionalInterface
+  private interface ChangeConsumer {
+
+    void accept(VirtualSchematicDisplayElement hologram, @Nullable HologramDetail oldDetail,
+        @Nullable HologramDetail newDetail);
+  }
+
+  private static void forEachSection(Box box, LongConsumer consumer) {
+    final int minX = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.minX));
+    final int minY = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.minY));
+    final int minZ = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.minZ));
+    final int maxX = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.maxX));
+    final int maxY = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.maxY));
+    final int maxZ = ChunkSectionPos.getSectionCoord(MathHelper.floor(box.maxZ));
+
+    for (int x = minX; x <= maxX; x++) {
+      for (int y = minY; y <= maxY; y++) {
+        for (int z = minZ; z <= maxZ; z++) {
+          consumer.accept(ChunkSectionPos.asLong(x, y, z));
+        }
+      }
+    }
+  }
+
+  private static Box sectionBox(long section) {
+    final int x = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackX(section));
+    final int y = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackY(section));
+    final int z = ChunkSectionPos.getBlockCoord(ChunkSectionPos.unpackZ(section));
+
+    return new Box(x, y, z, x + 16, y + 16, z + 16);
+  }
+
+  private static boolean contains(Box outer, Box inner) {
+    return outer.minX <= inner.minX && outer.minY <= inner.minY && outer.minZ <= inner.minZ
+        && outer.maxX >= inner.maxX && outer.maxY >= inner.maxY && outer.maxZ >= inner.maxZ;
+  }
+
+  private record Entry(VirtualSchematicDisplayElement hologram, List<Area> areas,
+                       LongList sections) {
+
+  }
+
+  private static class PlayerState {
+
+    private final Map<VirtualSchematicDisplayElement, HologramDetail> watching =
+        new IdentityHashMap<>();
+
+    private int version = -1;
+    private long section = Long.MIN_VALUE;
+    private long blockPos = Long.MIN_VALUE;
+    private boolean partiallyCovered = false;
+
+    private Map<VirtualSchematicDisplayElement, HologramDetail> watching() {
+      return watching;
+    }
+  }
+
+}
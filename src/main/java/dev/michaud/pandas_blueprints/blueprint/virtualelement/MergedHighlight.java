@@ -0,0 +1,49 @@
+package dev.michaud.pandas_blueprints.blueprint.virtualelement;
+
+import dev.michaud.pandas_blueprints.blueprint.virtualelement.BlueprintHighlight.BlockStateMatch;
+import eu.pb4.polymer.virtualentity.api.elements.ItemDisplayElement;
+import net.minecraft.entity.decoration.Brightness;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import org.jetbrains.annotations.NotNull;
+import org.joml.Vector3f;
+
+/**
+ * A single highlight stretched over a box of blocks that all have the same {@link BlockStateMatch}.
+ *
+ * @see MergedHighlightHolder
+ */
+public class MergedHighlight extends ItemDisplayElement {
+
+  /**
+   * @param match    The match of every block in the box. Must have a color.
+   * @param box      The box, relative to the schematic's minimum corner (inclusive)
+   * @param offset   The schematic's offset from the table
+   * @param rotation Rotation around the table
+   */
+  public MergedHighlight(@NotNull BlockStateMatch match, @NotNull BlockBox box,
+      @NotNull BlockPos offset, @NotNull BlockRotation rotation) {
+
+    final BlockPos first = new BlockPos(box.getMinX(), box.getMinY(), box.getMinZ())
+        .add(offset).rotate(rotation);
+    final BlockPos second = new BlockPos(box.getMaxX(), box.getMaxY(), box.getMaxZ())
+        .add(offset).rotate(rotation);
+    final BlockBox rotated = BlockBox.create(first, second);
+
+    setItem(BlueprintHighlight.DISPLAY_ITEM_FOR_MATCH.get(match));
+    setGlowing(true);
+    setGlowColorOverride(match.color);
+    setBrightness(new Brightness(15, 15));
+    setShadowRadius(0);
+
+    setScale(new Vector3f(rotated.getBlockCountX(), rotated.getBlockCountY(),
+        rotated.getBlockCountZ()));
+    setOffset(new Vec3d(
+        (rotated.getMinX() + rotated.getMaxX() + 1) / 2.0,
+        (rotated.getMinY() + rotated.getMaxY() + 1) / 2.0,
+        (rotated.getMinZ() + rotated.getMaxZ() + 1) / 2.0));
+  }
+
+}
@@ -0,0 +1,93 @@
+package dev.michaud.pandas_blueprints.blueprint.virtualelement;
+
+import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic;
+import dev.michaud.pandas_blueprints.blueprint.virtualelement.BlueprintHighlight.BlockStateMatch;
+import dev.michaud.pandas_blueprints.util.BoxMerger;
+import dev.michaud.pandas_blueprints.util.BoxMerger.MergedBox;
+import eu.pb4.polymer.virtualentity.api.elements.VirtualElement;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.Vec3d;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shows a schematic's highlights merged into a few big boxes, for players too far away to need
+ * every block. Rebuilt at most once every {@link #REBUILD_INTERVAL} ticks, and only while someone
+ * is watching.
+ *
+ * @see VirtualSchematicDisplayElement
+ */
+public class MergedHighlightHolder extends HologramPartHolder {
+
+  public static final int REBUILD_INTERVAL = 20;
+
+  private static final BlockStateMatch[] MATCHES = BlockStateMatch.values();
+
+  private final BlueprintSchematic schematic;
+
+  private boolean dirty = true;
+  private int ticksUntilRebuild = 0;
+
+  public MergedHighlightHolder(@NotNull BlueprintSchematic schematic, @NotNull ServerWorld world,
+      @NotNull Supplier<Vec3d> posSupplier) {
+    super(world, posSupplier);
+    this.schematic = schematic;
+  }
+
+  /**
+   * Mark the highlights as out of date, e.g. because a block's match changed
+   *
+   * @param immediately If true, rebuild the next time {@link #update} is called, instead of waiting
+   *                    for the rebuild interval.
+   */
+  public void markDirty(boolean immediately) {
+    dirty = true;
+
+    if (immediately) {
+      ticksUntilRebuild = 0;
+    }
+  }
+
+  /**
+   * Rebuild the highlights if they are out of date and the rebuild interval has passed.
+   *
+   * @param template The hologram's layout
+   * @param matches  The match of each of the template's entries
+   */
+  public void update(@NotNull HologramTemplate template, BlockStateMatch @NotNull [] matches) {
+
+    if (ticksUntilRebuild > 0) {
+      ticksUntilRebuild--;
+    }
+
+    if (ticksUntilRebuild > 0 || !dirty || getWatchingPlayers().isEmpty()) {
+      return;
+    }
+
+    // Only matches with a color are shown
+    final byte[] labels = new byte[schematic.getSize().getX() * schematic.getSize().getY()
+        * schematic.getSize().getZ()];
+
+    for (int entry = 0; entry < template.size(); entry++) {
+      final BlockStateMatch match = matches[entry];
+
+      if (match.color != null) {
+        labels[template.getPackedIndex(entry)] = (byte) (match.ordinal() + 1);
+      }
+    }
+
+    for (VirtualElement element : new ArrayList<>(getElements())) {
+      removeElement(element);
+    }
+
+    for (MergedBox mergedBox : BoxMerger.merge(labels, schematic.getSize())) {
+      addElement(new MergedHighlight(MATCHES[mergedBox.label() - 1], mergedBox.box(),
+          schematic.getOffset(), template.getRotation()));
+    }
+
+    dirty = false;
+    ticksUntilRebuild = REBUILD_INTERVAL;
+  }
+
+}
@@ -0,0 +1,88 @@
+package dev.michaud.pandas_blueprints.blueprint.virtualelement;
+
+import dev.michaud.pandas_blueprints.blueprint.virtualelement.BlueprintHighlight.BlockStateMatch;
+import eu.pb4.polymer.virtualentity.api.elements.ItemDisplayElement;
+import eu.pb4.polymer.virtualentity.api.elements.VirtualElement;
+import java.util.ArrayList;
+import java.util.function.Supplier;
+import net.minecraft.entity.decoration.Brightness;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.Vec3d;
+import org.jetbrains.annotations.NotNull;
+import org.joml.Vector3f;
+
+/**
+ * Shows just the edges of a schematic's bounding box, for players far away.
+ */
+public class OutlineHolder extends HologramPartHolder {
+
+  /**
+   * How thick the edges are, in blocks
+   */
+  public static final float EDGE_THICKNESS = 0.0625f;
+
+  private static final BlockStateMatch COLOR = BlockStateMatch.AIR;
+
+  public OutlineHolder(@NotNull ServerWorld world, @NotNull Supplier<Vec3d> posSupplier) {
+    super(world, posSupplier);
+  }
+
+  /**
+   * Replace the outline with a new one
+   *
+   * @param box The box to outline, relative to the table (inclusive)
+   */
+  public void setBox(@NotNull BlockBox box) {
+    for (VirtualElement element : new ArrayList<>(getElements())) {
+      removeElement(element);
+    }
+
+    final double minX = box.getMinX();
+    final double minY = box.getMinY();
+    final double minZ = box.getMinZ();
+    final double maxX = box.getMaxX() + 1;
+    final double maxY = box.getMaxY() + 1;
+    final double maxZ = box.getMaxZ() + 1;
+
+    final double centerX = (minX + maxX) / 2;
+    final double centerY = (minY + maxY) / 2;
+    final double centerZ = (minZ + maxZ) / 2;
+
+    for (double a : new double[]{minY, maxY}) {
+      for (double b : new double[]{minZ, maxZ}) {
+        addEdge(new Vec3d(centerX, a, b),
+            new Vector3f((float) (maxX - minX) + EDGE_THICKNESS, EDGE_THICKNESS, EDGE_THICKNESS));
+      }
+    }
+
+    for (double a : new double[]{minX, maxX}) {
+      for (double b : new double[]{minZ, maxZ}) {
+        addEdge(new Vec3d(a, centerY, b),
+            new Vector3f(EDGE_THICKNESS, (float) (maxY - minY) + EDGE_THICKNESS, EDGE_THICKNESS));
+      }
+    }
+
+    for (double a : new double[]{minX, maxX}) {
+      for (double b : new double[]{minY, maxY}) {
+        addEdge(new Vec3d(a, b, centerZ),
+            new Vector3f(EDGE_THICKNESS, EDGE_THICKNESS, (float) (maxZ - minZ) + EDGE_THICKNESS));
+      }
+    }
+  }
+
+  private void addEdge(Vec3d center, Vector3f scale) {
+    final ItemDisplayElement edge = new ItemDisplayElement(
+        BlueprintHighlight.DISPLAY_ITEM_FOR_MATCH.get(COLOR));
+
+    edge.setGlowing(true);
+    edge.setGlowColorOverride(COLOR.color);
+    edge.setBrightness(new Brightness(15, 15));
+    edge.setShadowRadius(0);
+    edge.setScale(scale);
+    edge.setOffset(center);
+
+    addElement(edge);
+  }
+
+}
@@ -1,125 +1,492 @@
 package dev.michaud.pandas_blueprints.blueprint.virtualelement;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
-import dev.michaud.pandas_blueprints.PandasBlueprints;
 import dev.michaud.pandas_blueprints.blocks.entity.BlueprintTableBlockEntity;
 import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic;
-import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic.BlueprintBlockInfo;
+import dev.michaud.pandas_blueprints.blueprint.BuildProgress;
 import dev.michaud.pandas_blueprints.blueprint.virtualelement.BlueprintHighlight.BlockStateMatch;
+import dev.michaud.pandas_blueprints.metrics.Histogram;
+import dev.michaud.pandas_blueprints.metrics.Metric.Unit;
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
+import dev.michaud.pandas_blueprints.util.BlockChangeNotifier;
 import dev.michaud.pandas_blueprints.util.RotationHelper;
 import eu.pb4.polymer.virtualentity.api.ElementHolder;
 import eu.pb4.polymer.virtualentity.api.attachment.ManualAttachment;
-import java.util.Map;
-import java.util.Set;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.Supplier;
 import net.minecraft.block.BlockState;
-import net.minecraft.block.enums.BedPart;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.packet.Packet;
 import net.minecraft.server.world.ServerWorld;
-import net.minecraft.state.property.Properties;
 import net.minecraft.util.BlockRotation;
+import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.Vec3d;
 import net.minecraft.util.math.Vec3i;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A "virtual" (packet-only) element holder that simulates block displays based on a Blueprint.
+ * Which blocks are shown and where comes from a shared {@link HologramTemplate}; only the matches
+ * and the elements belong to this hologram, and the elements aren't created until someone is close
+ * enough to see them.
+ * <p>
+ * This holder has a display and highlight for every block on the surface of the schematic. Blocks
+ * hidden behind them aren't shown at all until something is built at or next to them, and are then
+ * kept in a separate holder. Players further away watch less detailed holders instead (see
+ * {@link #getHolders(HologramDetail)}).
  */
 public class VirtualSchematicDisplayElement extends ElementHolder {
 
+  /**
+   * How often (in ticks) every position is checked again, in case a change was missed
+   */
+  public static final int FULL_RESYNC_INTERVAL = 100;
+
+  // How far from the hologram (in blocks) players can see each level of detail
+  public static final int FULL_DETAIL_DISTANCE = 5;
+  public static final int SURFACE_DETAIL_DISTANCE = 12;
+  public static final int MERGED_DETAIL_DISTANCE = 32;
+  public static final int OUTLINE_DETAIL_DISTANCE = 64;
+
+  private final Identifier blueprintId;
   private final BlueprintSchematic schematic;
   private final BlueprintTableBlockEntity blockEntity;
   private final ManualAttachment attachment;
-
-  private final Set<BlueprintBlockDisplay> blockDisplays;
-  private final Map<BlueprintBlockDisplay, BlueprintHighlight> blockHighlights;
+  private final HologramPartHolder interiorHolder; // Blocks hidden by other blocks
+  private final MergedHighlightHolder mergedHolder;
+  private final OutlineHolder outlineHolder;
 
   private BlockRotation rotation = BlockRotation.NONE;
-//  private BlockBox cachedBoundingBox = null;
+  private HologramTemplate template;
+
+  // Indexed by template entry
+  private final BlockStateMatch[] matches;
+  private final BitSet revealed; // Concealed blocks that have been revealed
+  private final BitSet checked; // Entries compared to the world at least once
+  private final int[] matchCounts = new int[BlockStateMatch.values().length]; // By ordinal; checked
+  private int uncheckedCount;
+  private int comparatorOutput = 15; // What the table gives before the progress is known
+  private BlueprintBlockDisplay @Nullable [] blockDisplays = null; // Created when first watched
+  private BlueprintHighlight @Nullable [] blockHighlights = null;
 
-  public VirtualSchematicDisplayElement(@NotNull BlueprintSchematic schematic,
-      @NotNull BlueprintTableBlockEntity blockEntity) {
-    this.schematic = schematic;
-    this.blockEntity = blockEntity;
-    this.blockDisplays = createBlockDisplays();
-    this.blockHighlights = createBlockHighlights();
+  /**
+   * Entries whose blocks changed since the last tick, which need to be checked again
+   */
+  private final IntSet dirtyEntries = new IntOpenHashSet();
+  private final BlockChangeNotifier.Listener changeListener = this::onBlockChanged;
 
+  private @Nullable BlockRotation appliedRotation = null; // What the change listener was set up for
+  private boolean needsFullResync = true;
+  private int ticksUntilFullResync = 0;
+  private int resyncCursor = -1; // The next entry to check in the full resync, or -1 if not running
+
+  private long packetsSent = 0; // Counted once per watching player
+  private final Histogram tickTime = new Histogram("tick_time", Unit.NANOS);
+
+  public VirtualSchematicDisplayElement(@NotNull Identifier blueprintId,
+      @NotNull BlueprintSchematic schematic, @NotNull BlueprintTableBlockEntity blockEntity) {
     final ServerWorld world = (ServerWorld) blockEntity.getWorld();
     final Supplier<Vec3d> posSupplier = () -> Vec3d.of(blockEntity.getPos());
 
+    this.blueprintId = blueprintId;
+    this.schematic = schematic;
+    this.blockEntity = blockEntity;
     this.attachment = new ManualAttachment(this, world, posSupplier);
+    this.interiorHolder = new HologramPartHolder(world, posSupplier);
+    this.mergedHolder = new MergedHighlightHolder(schematic, world, posSupplier);
+    this.outlineHolder = new OutlineHolder(world, posSupplier);
+    this.template = HologramTemplate.get(blueprintId, schematic, rotation);
+    this.matches = new BlockStateMatch[template.size()];
+    this.revealed = new BitSet(template.size());
+
+    this.checked = new BitSet(template.size());
+    this.uncheckedCount = template.size();
+
+    Arrays.fill(matches, BlockStateMatch.NO_BLOCK_MATCH); // Shown until checked
+    HologramTickScheduler.get(world).add(this);
   }
 
+  /**
+   * Tick without a limit on how many blocks are compared.
+   *
+   * @see #tick(int)
+   */
   @Override
   public void tick() {
-    final World world = blockEntity.getWorld();
-    final BlockPos pos = blockEntity.getPos();
+    tick(Integer.MAX_VALUE);
+  }
 
-    if (world == null || getWatchingPlayers().isEmpty()) {
-      return;
+  /**
+   * Update which blocks have been built. Only positions where a block changed are checked, except
+   * every {@link #FULL_RESYNC_INTERVAL} ticks (or after a rotation) when everything is. A full
+   * resync that doesn't fit in the budget carries on over the next ticks.
+   *
+   * @param maxComparisons The most blocks that can be compared to the world this tick
+   * @return How many blocks were compared
+   * @see HologramTickScheduler
+   */
+  public int tick(int maxComparisons) {
+    if (!(blockEntity.getWorld() instanceof ServerWorld world)) {
+      return 0;
+    }
+
+    if (rotation != appliedRotation) {
+      applyRotation(world);
+    }
+
+    final boolean watched = !getWatchingPlayers().isEmpty();
+    final boolean interiorWatched = !interiorHolder.getWatchingPlayers().isEmpty();
+
+    outlineHolder.tick();
+
+    final boolean blocksWatched = watched || interiorWatched
+        || !mergedHolder.getWatchingPlayers().isEmpty();
+
+    // Changed positions are always checked to keep the progress up to date, but the periodic full
+    // resync is only needed while someone's watching
+    int comparisons = resyncDirty(world, maxComparisons);
+
+    if (resyncCursor < 0 && (needsFullResync || blocksWatched && --ticksUntilFullResync <= 0)) {
+      resyncCursor = 0;
+      needsFullResync = false;
+    }
+
+    if (resyncCursor >= 0) {
+      comparisons += resyncAll(world, maxComparisons - comparisons);
+    }
+
+    updateComparators(world);
+
+    if (!blocksWatched) {
+      return comparisons;
+    }
+
+    if ((watched || interiorWatched) && blockDisplays == null) {
+      createElements();
+    }
+
+    mergedHolder.update(template, matches);
+    mergedHolder.tick();
+
+    if (interiorWatched) {
+      interiorHolder.tick();
     }
 
-    blockDisplays.forEach(blockDisplay -> {
+    if (watched) {
+      super.tick();
+    }
 
-      blockDisplay.setRotation(rotation);
+    return comparisons;
+  }
 
-      BlockPos worldPos = pos.add(blockDisplay.getBlockOffset());
-      BlockState worldState = world.getBlockState(worldPos);
-      BlockState blueprintState = blockDisplay.getBlueprintBlockState();
+  /**
+   * @return True if nobody can see the blocks, so there's nothing to update except the outline and
+   * the progress
+   */
+  public boolean isIdle() {
+    return rotation == appliedRotation
+        && getWatchingPlayers().isEmpty()
+        && interiorHolder.getWatchingPlayers().isEmpty()
+        && mergedHolder.getWatchingPlayers().isEmpty();
+  }
 
-      BlockStateMatch match = BlockStateMatch.from(blueprintState, worldState);
+  /**
+   * @return True once every block has been compared to the world at least once. Until then (e.g.
+   * right after the table is loaded), the progress isn't known.
+   */
+  public boolean isProgressKnown() {
+    return uncheckedCount == 0;
+  }
 
-      blockDisplay.setBlockMatch(match);
-    });
+  /**
+   * @return How much of the blueprint has been built, as of the last time it was checked, or empty
+   * if the first full check hasn't finished yet
+   */
+  public @NotNull Optional<BuildProgress> getProgress() {
+    if (!isProgressKnown()) {
+      return Optional.empty();
+    }
 
-    super.tick();
+    return Optional.of(new BuildProgress(matches.length,
+        matchCounts[BlockStateMatch.EXACT_MATCH.ordinal()],
+        matchCounts[BlockStateMatch.BLOCK_MATCH_ONLY.ordinal()],
+        matchCounts[BlockStateMatch.AIR.ordinal()],
+        matchCounts[BlockStateMatch.NO_BLOCK_MATCH.ordinal()]));
   }
 
-  protected Set<BlueprintBlockDisplay> createBlockDisplays() {
+  /**
+   * @return The table's redstone signal. Until the progress is known, this stays at 15 (like a
+   * table whose progress isn't tracked), so redstone doesn't see a complete build flicker off.
+   * @see BuildProgress#getComparatorOutput(int, int)
+   */
+  public int getComparatorOutput() {
+    return comparatorOutput;
+  }
 
-    final ImmutableSet.Builder<BlueprintBlockDisplay> builder = ImmutableSet.builder();
+  private void updateComparators(World world) {
+    if (!isProgressKnown()) {
+      return;
+    }
 
-    for (final BlueprintBlockInfo info : schematic) {
+    final int output = BuildProgress.getComparatorOutput(
+        matchCounts[BlockStateMatch.EXACT_MATCH.ordinal()], matches.length);
 
-      final BlockState state = info.state();
+    if (output != comparatorOutput) {
+      comparatorOutput = output;
+      world.updateComparators(blockEntity.getPos(), blockEntity.getCachedState().getBlock());
+    }
+  }
+
+  /**
+   * @return The holders to show players at the given level of detail
+   */
+  public @NotNull List<ElementHolder> getHolders(@NotNull HologramDetail detail) {
+    return switch (detail) {
+      case OUTLINE -> List.of(outlineHolder);
+      case MERGED -> List.of(mergedHolder);
+      case SURFACE -> List.of(this);
+      case FULL -> List.of(this, interiorHolder);
+    };
+  }
+
+  @Override
+  public void destroy() {
+    if (blockEntity.getWorld() instanceof ServerWorld world) {
+      BlockChangeNotifier.unregister(world, changeListener);
+
+      // Don't recreate the managers of a world that was unloaded first
+      final HologramVisibilityManager visibilityManager =
+          HologramVisibilityManager.getIfPresent(world);
+      final HologramTickScheduler scheduler = HologramTickScheduler.getIfPresent(world);
 
-      if (state.isAir()) {
-        continue;
+      if (visibilityManager != null) {
+        visibilityManager.remove(this);
       }
 
-      if (state.contains(Properties.BED_PART)
-          && state.get(Properties.BED_PART) == BedPart.FOOT) {
-        continue;
+      if (scheduler != null) {
+        scheduler.remove(this);
+      }
+    }
+
+    interiorHolder.destroy();
+    mergedHolder.destroy();
+    outlineHolder.destroy();
+    super.destroy();
+  }
+
+  @Override
+  public void sendPacket(Packet<? extends ClientPlayPacketListener> packet) {
+    packetsSent += getWatchingPlayers().size();
+    ModMetrics.HOLOGRAM_PACKETS.add(getWatchingPlayers().size());
+    super.sendPacket(packet);
+  }
+
+  /**
+   * @return How many update packets this hologram has sent (one per packet per watching player),
+   * not counting the packets sent when a player starts watching.
+   */
+  public long getPacketsSent() {
+    return packetsSent + interiorHolder.getPacketsSent() + mergedHolder.getPacketsSent()
+        + outlineHolder.getPacketsSent();
+  }
+
+  /**
+   * @return How long this hologram's ticks have taken, as recorded by the
+   * {@link HologramTickScheduler}
+   */
+  public @NotNull Histogram getTickTime() {
+    return tickTime;
+  }
+
+  public @NotNull BlockPos getTablePos() {
+    return blockEntity.getPos();
+  }
+
+  private void onBlockChanged(BlockPos pos, BlockState oldState, BlockState newState) {
+    final BlockPos tablePos = blockEntity.getPos();
+    final int entry = template.getEntry(BlockPos.asLong(pos.getX() - tablePos.getX(),
+        pos.getY() - tablePos.getY(), pos.getZ() - tablePos.getZ()));
+
+    if (entry >= 0) {
+      dirtyEntries.add(entry);
+    }
+  }
+
+  /**
+   * Switch to the template for the new rotation, and rotate every display.
+   */
+  private void applyRotation(ServerWorld world) {
+    template = HologramTemplate.get(blueprintId, schematic, rotation);
+
+    if (blockDisplays != null) {
+      for (BlueprintBlockDisplay blockDisplay : blockDisplays) {
+        if (blockDisplay != null) {
+          blockDisplay.setRotation(rotation);
+        }
       }
+    }
+
+    BlockChangeNotifier.register(world, getBoundingBox(), changeListener);
+    HologramVisibilityManager.get(world).update(this, getVisibilityAreas());
+
+    appliedRotation = rotation;
+    needsFullResync = true;
+    resyncCursor = -1;
+    mergedHolder.markDirty(true);
+    outlineHolder.setBox(getRelativeBox());
+  }
+
+  /**
+   * Continue the full resync from where it left off.
+   *
+   * @return How many blocks were compared
+   */
+  private int resyncAll(World world, int maxComparisons) {
+    final BlockPos.Mutable worldPos = new BlockPos.Mutable();
+    final int end = (int) Math.min(template.size(), (long) resyncCursor + maxComparisons);
+    final int start = resyncCursor;
+
+    for (int entry = start; entry < end; entry++) {
+      updateMatch(world, getWorldPos(entry, worldPos), entry);
+    }
+
+    if (end >= template.size()) {
+      resyncCursor = -1;
+      ticksUntilFullResync = FULL_RESYNC_INTERVAL;
+    } else {
+      resyncCursor = end;
+    }
+
+    return end - start;
+  }
+
+  /**
+   * Check the positions that changed, leaving any that don't fit in the budget for later.
+   *
+   * @return How many blocks were compared
+   */
+  private int resyncDirty(World world, int maxComparisons) {
+    final BlockPos.Mutable worldPos = new BlockPos.Mutable();
+    final IntIterator iterator = dirtyEntries.iterator();
+    int comparisons = 0;
+
+    while (iterator.hasNext() && comparisons < maxComparisons) {
+      final int entry = iterator.nextInt();
+      iterator.remove();
+
+      updateMatch(world, getWorldPos(entry, worldPos), entry);
+      comparisons++;
+    }
 
-      final BlueprintBlockDisplay element = new BlueprintBlockDisplay(info, schematic.getOffset());
-      element.setRotation(rotation);
+    return comparisons;
+  }
+
+  private BlockPos getWorldPos(int entry, BlockPos.Mutable out) {
+    final BlockPos tablePos = blockEntity.getPos();
+    final long offset = template.getOffset(entry);
 
-      if (addElementWithoutUpdates(element)) {
-        builder.add(element);
+    return out.set(tablePos.getX() + BlockPos.unpackLongX(offset),
+        tablePos.getY() + BlockPos.unpackLongY(offset),
+        tablePos.getZ() + BlockPos.unpackLongZ(offset));
+  }
+
+  private void updateMatch(World world, BlockPos worldPos, int entry) {
+    final BlockState worldState = world.getBlockState(worldPos);
+    final BlockState blueprintState = schematic.getRotated(template.getRotation())
+        .getState(template.getBlockIndex(entry));
+    final BlockStateMatch match = BlockStateMatch.from(blueprintState, worldState);
+
+    if (!checked.get(entry)) {
+      checked.set(entry);
+      uncheckedCount--;
+      matchCounts[match.ordinal()]++;
+    } else if (match != matches[entry]) {
+      matchCounts[matches[entry].ordinal()]--;
+      matchCounts[match.ordinal()]++;
+    }
+
+    if (match != matches[entry]) {
+      matches[entry] = match;
+      mergedHolder.markDirty(false);
+
+      if (blockDisplays != null && blockDisplays[entry] != null) {
+        blockDisplays[entry].setBlockMatch(match);
       }
     }
 
-    return builder.build();
+    if (match != BlockStateMatch.AIR) {
+      revealAround(entry);
+    }
+  }
+
+  /**
+   * Something was built at the given entry, so show the concealed blocks there and next to it.
+   */
+  private void revealAround(int entry) {
+    reveal(entry);
+
+    for (Direction direction : Direction.values()) {
+      reveal(template.getEntry(BlockPos.offset(template.getOffset(entry), direction)));
+    }
   }
 
-  protected Map<BlueprintBlockDisplay, BlueprintHighlight> createBlockHighlights() {
+  private void reveal(int entry) {
+    if (entry < 0 || !template.isConcealed(entry) || revealed.get(entry)) {
+      return;
+    }
 
-    final ImmutableMap.Builder<BlueprintBlockDisplay, BlueprintHighlight> builder = ImmutableMap
-        .builderWithExpectedSize(blockDisplays.size());
+    revealed.set(entry);
 
-    for (final BlueprintBlockDisplay display : blockDisplays) {
-      final BlueprintHighlight element = new BlueprintHighlight(display);
+    if (blockDisplays != null) {
+      createElement(entry, interiorHolder);
+    }
+  }
 
-      if (addElementWithoutUpdates(element)) {
-        builder.put(display, element);
+  /**
+   * Create the display and highlight of every block that should be shown.
+   */
+  private void createElements() {
+    blockDisplays = new BlueprintBlockDisplay[template.size()];
+    blockHighlights = new BlueprintHighlight[template.size()];
+
+    for (int entry = 0; entry < template.size(); entry++) {
+      if (!template.isConcealed(entry)) {
+        createElement(entry, this);
+      } else if (revealed.get(entry)) {
+        createElement(entry, interiorHolder);
       }
     }
+  }
+
+  private void createElement(int entry, ElementHolder holder) {
+    if (blockDisplays == null || blockHighlights == null) {
+      return;
+    }
+
+    final BlockState state = schematic.getBlockState(template.getPackedIndex(entry));
+    final BlueprintBlockDisplay display = new BlueprintBlockDisplay(schematic, state,
+        template.getBlockIndex(entry));
+    display.setRotation(rotation);
+    display.setBlockMatch(matches[entry]);
+
+    final BlueprintHighlight highlight = new BlueprintHighlight(display);
+
+    holder.addElement(display);
+    holder.addElement(highlight);
 
-    return builder.build();
+    blockDisplays[entry] = display;
+    blockHighlights[entry] = highlight;
   }
 
   // Getters and setters
@@ -148,4 +515,33 @@ public class VirtualSchematicDisplayElement extends ElementHolder {
     return BlockBox.create(minPos, maxPos);
   }
 
+  /**
+   * @return The exact box the schematic's blocks take up, relative to the table
+   */
+  public BlockBox getRelativeBox() {
+    return template.getRelativeBox();
+  }
+
+  /**
+   * @return The areas where players can see this hologram, and how much of it they see there. Each
+   * block is visible near the table or near the hologram itself, and less detailed versions are
+   * visible from further away.
+   * @see HologramVisibilityManager
+   */
+  public List<HologramVisibilityManager.Area> getVisibilityAreas() {
+    final Box hologramBox = Box.from(getBoundingBox());
+    final Box closeToTableBox = Box.of(Vec3d.of(blockEntity.getPos()), 10, 10, 10);
+
+    return List.of(
+        new HologramVisibilityManager.Area(closeToTableBox, HologramDetail.FULL),
+        new HologramVisibilityManager.Area(hologramBox.expand(FULL_DETAIL_DISTANCE),
+            HologramDetail.FULL),
+        new HologramVisibilityManager.Area(hologramBox.expand(SURFACE_DETAIL_DISTANCE),
+            HologramDetail.SURFACE),
+        new HologramVisibilityManager.Area(hologramBox.expand(MERGED_DETAIL_DISTANCE),
+            HologramDetail.MERGED),
+        new HologramVisibilityManager.Area(hologramBox.expand(OUTLINE_DETAIL_DISTANCE),
+            HologramDetail.OUTLINE));
+  }
+
 }
\ No newline at end of file
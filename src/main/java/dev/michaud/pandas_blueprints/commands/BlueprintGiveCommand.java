@@ -2,12 +2,10 @@ package dev.michaud.pandas_blueprints.commands;
 
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
-import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematic;
 import dev.michaud.pandas_blueprints.blueprint.BlueprintSchematicManager;
 import dev.michaud.pandas_blueprints.items.FilledBlueprintItem;
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import net.minecraft.command.argument.EntityArgumentType;
 import net.minecraft.command.argument.IdentifierArgumentType;
 import net.minecraft.item.ItemStack;
@@ -42,9 +40,7 @@ public class BlueprintGiveCommand {
     final BlueprintSchematicManager manager = BlueprintSchematicManager.getInstance(server);
 
     final Identifier id = IdentifierArgumentType.getIdentifier(context, "id");
-    final Optional<BlueprintSchematic> blueprint = manager.getSchematic(id);
-
-    if (blueprint.isEmpty()) {
+    if (!manager.hasSchematic(id)) {
       source.sendError(Text.of("Not a valid blueprint id!"));
       return 0;
     }
@@ -0,0 +1,49 @@
+package dev.michaud.pandas_blueprints.commands;
+
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import dev.michaud.pandas_blueprints.blocks.entity.BlueprintTableBlockEntity;
+import dev.michaud.pandas_blueprints.blueprint.BuildProgress;
+import java.util.Optional;
+import net.minecraft.command.argument.BlockPosArgumentType;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+
+public class BlueprintProgressCommand {
+
+  public static int execute(CommandContext<ServerCommandSource> context)
+      throws CommandSyntaxException {
+
+    final ServerCommandSource source = context.getSource();
+    final BlockPos pos = BlockPosArgumentType.getLoadedBlockPos(context, "pos");
+
+    if (!(source.getWorld().getBlockEntity(pos) instanceof BlueprintTableBlockEntity table)) {
+      source.sendError(Text.literal("There is no blueprint table there!"));
+      return 0;
+    }
+
+    if (!table.hasBlueprint()) {
+      source.sendError(Text.literal("That blueprint table doesn't have a blueprint!"));
+      return 0;
+    }
+
+    final Optional<BuildProgress> optionalProgress = table.getProgress();
+
+    if (optionalProgress.isEmpty()) {
+      source.sendError(Text.literal("That blueprint is still being checked, try again shortly."));
+      return 0;
+    }
+
+    final BuildProgress progress = optionalProgress.get();
+    final int percent = (int) (progress.getCompletion() * 100);
+
+    source.sendFeedback(() -> Text.literal(String.format(
+        "%d%% built: %d of %d blocks match, %d in the wrong state, %d missing, %d wrong",
+        percent, progress.exact(), progress.total(), progress.blockOnly(), progress.missing(),
+        progress.wrong())), false);
+
+    return percent;
+  }
+
+}
@@ -0,0 +1,81 @@
+package dev.michaud.pandas_blueprints.commands;
+
+import com.mojang.brigadier.context.CommandContext;
+import dev.michaud.pandas_blueprints.blueprint.virtualelement.HologramTickScheduler;
+import dev.michaud.pandas_blueprints.blueprint.virtualelement.VirtualSchematicDisplayElement;
+import dev.michaud.pandas_blueprints.metrics.Metric;
+import dev.michaud.pandas_blueprints.metrics.Metric.Unit;
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+
+public class BlueprintStatsCommand {
+
+  /**
+   * How many of the most expensive holograms to list
+   */
+  private static final int TOP_HOLOGRAMS = 5;
+
+  public static int execute(CommandContext<ServerCommandSource> context) {
+
+    final ServerCommandSource source = context.getSource();
+    final List<VirtualSchematicDisplayElement> holograms = new ArrayList<>();
+
+    for (Metric metric : ModMetrics.getMetrics()) {
+      source.sendFeedback(() -> Text.literal(metric.summarize()), false);
+    }
+
+    source.sendFeedback(() -> Text.literal(String.format(
+        "Holograms: last tick used %d of %d comparisons",
+        HologramTickScheduler.getLastTotalComparisons(), HologramTickScheduler.getLastBudget())),
+        false);
+
+    for (Map.Entry<ServerWorld, HologramTickScheduler> entry
+        : HologramTickScheduler.getSchedulers().entrySet()) {
+
+      final String worldId = entry.getKey().getRegistryKey().getValue().toString();
+      final HologramTickScheduler scheduler = entry.getValue();
+
+      source.sendFeedback(() -> Text.literal(String.format(
+          "%s: %d holograms, last tick used %d comparisons", worldId,
+          scheduler.getHologramCount(), scheduler.getLastComparisons())), false);
+
+      holograms.addAll(scheduler.getHolograms());
+    }
+
+    holograms.sort(Comparator.comparingDouble(
+        (VirtualSchematicDisplayElement hologram) -> hologram.getTickTime().getMean()).reversed());
+
+    for (VirtualSchematicDisplayElement hologram : holograms.subList(0,
+        Math.min(TOP_HOLOGRAMS, holograms.size()))) {
+
+      final BlockPos pos = hologram.getTablePos();
+
+      source.sendFeedback(() -> Text.literal(String.format(
+          "Table at %d, %d, %d: mean tick %s, max %s, %d packets sent", pos.getX(), pos.getY(),
+          pos.getZ(), Unit.NANOS.format(hologram.getTickTime().getMean()),
+          Unit.NANOS.format(hologram.getTickTime().getMax()), hologram.getPacketsSent())), false);
+    }
+
+    return holograms.size();
+  }
+
+  public static int executeReset(CommandContext<ServerCommandSource> context) {
+
+    ModMetrics.resetAll();
+
+    for (HologramTickScheduler scheduler : HologramTickScheduler.getSchedulers().values()) {
+      scheduler.getHolograms().forEach(hologram -> hologram.getTickTime().reset());
+    }
+
+    context.getSource().sendFeedback(() -> Text.literal("Reset blueprint stats"), true);
+    return 1;
+  }
+
+}
@@ -4,6 +4,7 @@ import com.mojang.brigadier.arguments.IntegerArgumentType;
 import dev.michaud.pandas_blueprints.commands.suggestion_provider.BlueprintSuggestionProvider;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.minecraft.command.PermissionLevelSource;
+import net.minecraft.command.argument.BlockPosArgumentType;
 import net.minecraft.command.argument.EntityArgumentType;
 import net.minecraft.command.argument.IdentifierArgumentType;
 import net.minecraft.server.command.CommandManager;
@@ -23,6 +24,13 @@ public class ModCommands {
               .then(CommandManager.argument("id", IdentifierArgumentType.identifier())
                   .suggests(new BlueprintSuggestionProvider())
                   .executes(BlueprintSizeCommand::execute)))
+          .then(CommandManager.literal("progress")
+              .then(CommandManager.argument("pos", BlockPosArgumentType.blockPos())
+                  .executes(BlueprintProgressCommand::execute)))
+          .then(CommandManager.literal("stats")
+              .executes(BlueprintStatsCommand::execute)
+              .then(CommandManager.literal("reset")
+                  .executes(BlueprintStatsCommand::executeReset)))
           .then(CommandManager.literal("give")
               .then(CommandManager.argument("id", IdentifierArgumentType.identifier())
                   .suggests(new BlueprintSuggestionProvider())
@@ -0,0 +1,21 @@
+package dev.michaud.pandas_blueprints.gamerules;
+
+import dev.michaud.pandas_blueprints.blocks.entity.BlueprintTableBlockEntity;
+import net.fabricmc.fabric.api.gamerule.v1.GameRuleFactory;
+import net.fabricmc.fabric.api.gamerule.v1.GameRuleRegistry;
+import net.minecraft.world.GameRules;
+import net.minecraft.world.GameRules.IntRule;
+
+public class ModGameRules {
+
+  /**
+   * Maximum side length of a blueprint, including the scaffolding frame.
+   */
+  public static final GameRules.Key<IntRule> BLUEPRINT_MAX_SIZE = GameRuleRegistry.register(
+      "blueprintMaxSize", GameRules.Category.MISC,
+      GameRuleFactory.createIntRule(BlueprintTableBlockEntity.BLUEPRINT_MAX_DISTANCE, 3,
+          BlueprintTableBlockEntity.BLUEPRINT_MAX_DISTANCE_LIMIT));
+
+  public static void registerModGameRules() {
+  }
+}
@@ -0,0 +1,45 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A running total. Safe to add to from any thread.
+ */
+public class Counter implements Metric {
+
+  private final String name;
+  private final LongAdder total = new LongAdder();
+
+  public Counter(@NotNull String name) {
+    this.name = name;
+  }
+
+  public void increment() {
+    total.increment();
+  }
+
+  public void add(long amount) {
+    total.add(amount);
+  }
+
+  public long get() {
+    return total.sum();
+  }
+
+  @Override
+  public @NotNull String getName() {
+    return name;
+  }
+
+  @Override
+  public @NotNull String summarize() {
+    return name + ": " + get();
+  }
+
+  @Override
+  public void reset() {
+    total.reset();
+  }
+
+}
@@ -0,0 +1,95 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Records a distribution of values (e.g. how long something took). Values are counted in
+ * power-of-two buckets, so percentiles are only accurate to within a factor of two, but recording
+ * is cheap and the memory used never grows. Safe to record from any thread.
+ */
+public class Histogram implements Metric {
+
+  private final String name;
+  private final Unit unit;
+
+  // Bucket i holds values in [2^(i-1), 2^i), and bucket 0 holds 0 (and anything negative)
+  private final long[] buckets = new long[Long.SIZE + 1];
+  private long count = 0;
+  private long sum = 0;
+  private long max = 0;
+
+  public Histogram(@NotNull String name, @NotNull Unit unit) {
+    this.name = name;
+    this.unit = unit;
+  }
+
+  public synchronized void record(long value) {
+    final long clamped = Math.max(value, 0);
+
+    buckets[Long.SIZE - Long.numberOfLeadingZeros(clamped)]++;
+    count++;
+    sum += clamped;
+    max = Math.max(max, clamped);
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getSum() {
+    return sum;
+  }
+
+  public synchronized long getMax() {
+    return max;
+  }
+
+  public synchronized double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * @param fraction The percentile, from 0 to 1
+   * @return An upper bound on the given percentile (the top of the bucket it falls in)
+   */
+  public synchronized long getPercentile(double fraction) {
+    final long target = (long) Math.ceil(count * fraction);
+    long seen = 0;
+
+    for (int i = 0; i < buckets.length; i++) {
+      seen += buckets[i];
+
+      if (seen >= target && seen > 0) {
+        return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+      }
+    }
+
+    return max;
+  }
+
+  @Override
+  public @NotNull String getName() {
+    return name;
+  }
+
+  @Override
+  public synchronized @NotNull String summarize() {
+    if (count == 0) {
+      return name + ": none";
+    }
+
+    return String.format("%s: n=%d, mean=%s, p50<=%s, p99<=%s, max=%s", name, count,
+        unit.format(getMean()), unit.format(getPercentile(0.5)), unit.format(getPercentile(0.99)),
+        unit.format(max));
+  }
+
+  @Override
+  public synchronized void reset() {
+    Arrays.fill(buckets, 0);
+    count = 0;
+    sum = 0;
+    max = 0;
+  }
+
+}
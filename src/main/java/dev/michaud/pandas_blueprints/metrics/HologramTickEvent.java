@@ -0,0 +1,36 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one hologram being ticked
+ */
+@Name("pandas_blueprints.HologramTick")
+@Label("Hologram Tick")
+@Description("A blueprint hologram comparing its blocks to the world")
+@Category({"Panda's Blueprints", "Holograms"})
+@StackTrace(false)
+public class HologramTickEvent extends Event {
+
+  @Label("Table X")
+  public int tableX;
+
+  @Label("Table Y")
+  public int tableY;
+
+  @Label("Table Z")
+  public int tableZ;
+
+  @Label("Budget")
+  @Description("The most blocks the hologram was allowed to compare")
+  public int budget;
+
+  @Label("Comparisons")
+  public int comparisons;
+
+}
@@ -0,0 +1,42 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Something measured while the mod is running, shown by {@code /blueprint stats}
+ *
+ * @see ModMetrics
+ */
+public interface Metric {
+
+  @NotNull String getName();
+
+  /**
+   * @return A one-line summary of what's been recorded so far
+   */
+  @NotNull String summarize();
+
+  /**
+   * Forget everything recorded so far
+   */
+  void reset();
+
+  /**
+   * How recorded values are shown
+   */
+  enum Unit {
+    COUNT, NANOS;
+
+    public String format(double value) {
+      return switch (this) {
+        case COUNT -> value == Math.rint(value)
+            ? String.valueOf((long) value)
+            : String.format("%.1f", value);
+        case NANOS -> value >= 1_000_000
+            ? String.format("%.2fms", value / 1_000_000)
+            : String.format("%.1fus", value / 1_000);
+      };
+    }
+  }
+
+}
@@ -0,0 +1,53 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import dev.michaud.pandas_blueprints.metrics.Metric.Unit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Everything the mod measures about its own cost, so it's possible to tell where the tick time
+ * goes. Shown with {@code /blueprint stats}. The same work is also recorded as JFR events (see
+ * {@link HologramTickEvent} and the others in this package), for profiling with Flight Recorder.
+ */
+public class ModMetrics {
+
+  private static final List<Metric> METRICS = new ArrayList<>();
+
+  // Holograms
+  public static final Histogram HOLOGRAM_TICK_TIME = register(
+      new Histogram("hologram_tick_time", Unit.NANOS));
+  public static final Histogram HOLOGRAM_COMPARISONS = register(
+      new Histogram("hologram_comparisons_per_tick", Unit.COUNT));
+  public static final Counter HOLOGRAM_PACKETS = register(new Counter("hologram_packets"));
+
+  // Capturing blueprints
+  public static final Histogram OUTLINE_DETECTION_TIME = register(
+      new Histogram("outline_detection_time", Unit.NANOS));
+  public static final Histogram CAPTURE_TIME = register(
+      new Histogram("capture_time", Unit.NANOS));
+  public static final Histogram CAPTURE_BLOCKS = register(
+      new Histogram("capture_blocks", Unit.COUNT));
+
+  // Scaffolding
+  public static final Counter SCAFFOLDING_TICKS = register(new Counter("scaffolding_ticks"));
+  public static final Histogram SCAFFOLDING_STRUCTURE_SIZE = register(
+      new Histogram("scaffolding_structure_size", Unit.COUNT));
+  public static final Histogram SCAFFOLDING_PROPAGATION_TIME = register(
+      new Histogram("scaffolding_propagation_time", Unit.NANOS));
+
+  private static <T extends Metric> T register(T metric) {
+    METRICS.add(metric);
+    return metric;
+  }
+
+  public static @NotNull List<Metric> getMetrics() {
+    return Collections.unmodifiableList(METRICS);
+  }
+
+  public static void resetAll() {
+    METRICS.forEach(Metric::reset);
+  }
+
+}
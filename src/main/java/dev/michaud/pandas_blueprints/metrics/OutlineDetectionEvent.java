@@ -0,0 +1,31 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for finding the scaffolding outline around a blueprint table
+ */
+@Name("pandas_blueprints.OutlineDetection")
+@Label("Outline Detection")
+@Description("Searching for the scaffolding frame around a blueprint table")
+@Category({"Panda's Blueprints", "Capture"})
+@StackTrace(false)
+public class OutlineDetectionEvent extends Event {
+
+  @Label("Found")
+  public boolean found;
+
+  @Label("Positions Probed")
+  @Description("How many positions were looked up in the world")
+  public int positionsProbed;
+
+  @Label("Lookups")
+  @Description("How many times a position was checked, including remembered ones")
+  public int lookups;
+
+}
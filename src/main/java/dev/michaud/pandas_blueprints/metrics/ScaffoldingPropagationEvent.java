@@ -0,0 +1,31 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for updating the distances of a copper scaffolding structure at once
+ */
+@Name("pandas_blueprints.ScaffoldingPropagation")
+@Label("Scaffolding Propagation")
+@Description("Recomputing the distances of a connected copper scaffolding structure")
+@Category({"Panda's Blueprints", "Scaffolding"})
+@StackTrace(false)
+public class ScaffoldingPropagationEvent extends Event {
+
+  @Label("Structure Size")
+  public int structureSize;
+
+  @Label("Fallen")
+  @Description("How many blocks fell because they were too far from support")
+  public int fallen;
+
+  @Label("Too Big")
+  @Description("The structure was too big, so it was left to update one block at a time")
+  public boolean tooBig;
+
+}
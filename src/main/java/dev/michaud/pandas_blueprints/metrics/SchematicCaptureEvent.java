@@ -0,0 +1,26 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for turning a snapshot of the world into a schematic (off the server thread)
+ */
+@Name("pandas_blueprints.SchematicCapture")
+@Label("Schematic Capture")
+@Description("Turning copied chunk sections into a blueprint schematic")
+@Category({"Panda's Blueprints", "Capture"})
+@StackTrace(false)
+public class SchematicCaptureEvent extends Event {
+
+  @Label("Sections")
+  public int sections;
+
+  @Label("Blocks")
+  public int blocks;
+
+}
@@ -5,6 +5,7 @@ import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.llamalad7.mixinextras.sugar.Local;
 import dev.michaud.pandas_blueprints.PandasBlueprints;
 import dev.michaud.pandas_blueprints.blocks.scaffolding.ScaffoldingBlockDistanceHolder;
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
 import dev.michaud.pandas_blueprints.tags.ModBlockTags;
 import dev.michaud.pandas_blueprints.tags.ModItemTags;
 import net.minecraft.block.Block;
@@ -163,6 +164,7 @@ public abstract class MixinScaffoldingBlock extends Block implements Waterloggab
           value = "INVOKE",
           target = "Lnet/minecraft/block/ScaffoldingBlock;calculateDistance(Lnet/minecraft/world/BlockView;Lnet/minecraft/util/math/BlockPos;)I"))
   private int redirectScheduledTick(BlockView world, BlockPos pos) {
+    ModMetrics.SCAFFOLDING_TICKS.increment();
     return calculateScaffoldingDistance(world, pos);
   }
 
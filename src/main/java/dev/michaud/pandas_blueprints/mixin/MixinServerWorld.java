@@ -0,0 +1,21 @@
+package dev.michaud.pandas_blueprints.mixin;
+
+import dev.michaud.pandas_blueprints.util.BlockChangeNotifier;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ServerWorld.class)
+public abstract class MixinServerWorld {
+
+  @Inject(method = "updateListeners", at = @At("HEAD"))
+  private void updateListeners(BlockPos pos, BlockState oldState, BlockState newState, int flags,
+      CallbackInfo ci) {
+    BlockChangeNotifier.notifyListeners((ServerWorld) (Object) this, pos, oldState, newState);
+  }
+
+}
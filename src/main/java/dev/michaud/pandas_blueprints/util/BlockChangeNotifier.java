@@ -0,0 +1,159 @@
+package dev.michaud.pandas_blueprints.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.block.BlockState;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Lets things be told when blocks in an area change, instead of checking every position every
+ * tick. Listeners are indexed by chunk section, so a block change only has to look at the few
+ * listeners whose areas overlap its section.
+ * <p>
+ * Changes are picked up from {@link ServerWorld#updateListeners}, which is called for almost every
+ * block change. A few changes skip it (e.g. when a block is set without
+ * {@link net.minecraft.block.Block#NOTIFY_LISTENERS}), so listeners that need to be exact should
+ * still resync every once in a while.
+ *
+ * @see dev.michaud.pandas_blueprints.mixin.MixinServerWorld
+ */
+public class BlockChangeNotifier {
+
+  private static final Map<ServerWorld, WorldIndex> INDICES = new IdentityHashMap<>();
+
+  @FunctionalInterface
+  public interface Listener {
+
+    /**
+     * Called on the server thread after the block at {@code pos} changed.
+     */
+    void onBlockChanged(@NotNull BlockPos pos, @NotNull BlockState oldState,
+        @NotNull BlockState newState);
+  }
+
+  public static void registerEvents() {
+    ServerWorldEvents.UNLOAD.register((server, world) -> INDICES.remove(world));
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> INDICES.clear());
+  }
+
+  /**
+   * Start listening to changes inside the given box. If the listener was already registered in
+   * this world, its box is replaced.
+   */
+  public static void register(@NotNull ServerWorld world, @NotNull BlockBox box,
+      @NotNull Listener listener) {
+    INDICES.computeIfAbsent(world, w -> new WorldIndex()).add(new Registration(listener, box));
+  }
+
+  public static void unregister(@NotNull ServerWorld world, @NotNull Listener listener) {
+    final WorldIndex index = INDICES.get(world);
+
+    if (index != null) {
+      index.remove(listener);
+
+      if (index.isEmpty()) {
+        INDICES.remove(world);
+      }
+    }
+  }
+
+  /**
+   * Tell every listener whose box contains {@code pos} that the block there changed.
+   */
+  public static void notifyListeners(@NotNull ServerWorld world, @NotNull BlockPos pos,
+      @NotNull BlockState oldState, @NotNull BlockState newState) {
+
+    final WorldIndex index = INDICES.get(world);
+
+    if (index == null || oldState == newState) {
+      return;
+    }
+
+    final List<Registration> registrations = index.sections.get(
+        ChunkSectionPos.asLong(ChunkSectionPos.getSectionCoord(pos.getX()),
+            ChunkSectionPos.getSectionCoord(pos.getY()),
+            ChunkSectionPos.getSectionCoord(pos.getZ())));
+
+    if (registrations == null) {
+      return;
+    }
+
+    // Copy, in case a listener (un)registers something
+    for (Registration registration : registrations.toArray(Registration[]::new)) {
+      if (registration.box().contains(pos)) {
+        registration.listener().onBlockChanged(pos, oldState, newState);
+      }
+    }
+  }
+
+  private record Registration(Listener listener, BlockBox box) {
+
+    private void forEachSection(SectionConsumer consumer) {
+      for (int x = ChunkSectionPos.getSectionCoord(box.getMinX());
+          x <= ChunkSectionPos.getSectionCoord(box.getMaxX()); x++) {
+        for (int y = ChunkSectionPos.getSectionCoord(box.getMinY());
+            y <= ChunkSectionPos.getSectionCoord(box.getMaxY()); y++) {
+          for (int z = ChunkSectionPos.getSectionCoord(box.getMinZ());
+              z <= ChunkSectionPos.getSectionCoord(box.getMaxZ()); z++) {
+            consumer.accept(ChunkSectionPos.asLong(x, y, z));
+          }
+        }
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface SectionConsumer {
+
+    void accept(long sectionPos);
+  }
+
+  private static class WorldIndex {
+
+    private final Long2ObjectMap<List<Registration>> sections = new Long2ObjectOpenHashMap<>();
+    private final Map<Listener, Registration> registrations = new IdentityHashMap<>();
+
+    private void add(Registration registration) {
+      remove(registration.listener());
+      registrations.put(registration.listener(), registration);
+
+      registration.forEachSection(section ->
+          sections.computeIfAbsent(section, s -> new ArrayList<>()).add(registration));
+    }
+
+    private void remove(Listener listener) {
+      final Registration registration = registrations.remove(listener);
+
+      if (registration == null) {
+        return;
+      }
+
+      registration.forEachSection(section -> {
+        final List<Registration> list = sections.get(section);
+
+        if (list != null) {
+          list.remove(registration);
+
+          if (list.isEmpty()) {
+            sections.remove(section);
+          }
+        }
+      });
+    }
+
+    private boolean isEmpty() {
+      return registrations.isEmpty();
+    }
+  }
+
+}
@@ -2,8 +2,9 @@ package dev.michaud.pandas_blueprints.util;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import dev.michaud.pandas_blueprints.PandasBlueprints;
+import dev.michaud.pandas_blueprints.metrics.ModMetrics;
+import dev.michaud.pandas_blueprints.metrics.OutlineDetectionEvent;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -33,30 +34,67 @@ public class BoxDetector {
    */
   public static Optional<BlockBox> detectOutlineOf(BlockPos startPos, int maximumSideLength,
       Function<BlockPos, Boolean> validFrameBlockFunction) {
+    return detectOutline(startPos, maximumSideLength, validFrameBlockFunction).box();
+  }
 
-    Stopwatch stopwatch = Stopwatch.createStarted();
+  /**
+   * Same as {@link #detectOutlineOf}, but also reports how much work it took. Every position that
+   * could be part of the outline is only looked up once (see {@link FrameMask}).
+   *
+   * @return The result, with diagnostics
+   */
+  public static Detection detectOutline(BlockPos startPos, int maximumSideLength,
+      Function<BlockPos, Boolean> validFrameBlockFunction) {
 
-    final Optional<BlockBox> baseSquare = findLargestValidBaseSquare(startPos, maximumSideLength,
-        validFrameBlockFunction);
+    final OutlineDetectionEvent event = new OutlineDetectionEvent();
+    event.begin();
 
-    if (baseSquare.isEmpty()) {
-      return Optional.empty();
-    }
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    final FrameMask mask = new FrameMask(validFrameBlockFunction);
+    final Function<BlockPos, Boolean> isValid = mask::isValid;
 
-    final Optional<BlockBox> topSquare = findHighestValidTopSquare(baseSquare.get(),
-        maximumSideLength, validFrameBlockFunction);
+    final Optional<BlockBox> out = findLargestValidBaseSquare(startPos, maximumSideLength, isValid)
+        .flatMap(baseSquare -> findHighestValidTopSquare(baseSquare, maximumSideLength, isValid)
+            .map(topSquare -> encompass(baseSquare, topSquare)));
 
-    if (topSquare.isEmpty()) {
-      return Optional.empty();
-    }
+    final Detection detection = new Detection(out, mask.getProbes(), mask.getLookups(),
+        stopwatch.elapsed(TimeUnit.NANOSECONDS));
 
-    final BlockBox out = encompass(baseSquare.get(), topSquare.get());
+    ModMetrics.OUTLINE_DETECTION_TIME.record(detection.nanos());
 
-    stopwatch.stop();
-//    PandasBlueprints.LOGGER.info("Detected an outline in {}ms",
-//        stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    event.found = out.isPresent();
+    event.positionsProbed = detection.positionsProbed();
+    event.lookups = detection.lookups();
+    event.commit();
 
-    return Optional.of(out);
+    PandasBlueprints.LOGGER.debug("Detected outline {} in {}us ({} positions probed, {} lookups)",
+        out.orElse(null), detection.nanos() / 1000, detection.positionsProbed(),
+        detection.lookups());
+
+    return detection;
+  }
+
+  /**
+   * The result of detecting an outline
+   *
+   * @param box             The outline, if one was found
+   * @param positionsProbed How many positions were looked up in the world
+   * @param lookups         How many times a position was checked, including remembered ones
+   * @param nanos           How long it took
+   */
+  public record Detection(Optional<BlockBox> box, int positionsProbed, int lookups, long nanos) {
+
+  }
+
+  /**
+   * @return Every position an outline starting at the given position could include: its base
+   * level, out to the maximum side length in each direction, and up to the maximum side length above
+   * it.
+   */
+  public static BlockBox getSearchRegion(BlockPos startPos, int maximumSideLength) {
+    return new BlockBox(startPos.getX() - maximumSideLength, startPos.getY(),
+        startPos.getZ() - maximumSideLength, startPos.getX() + maximumSideLength,
+        startPos.getY() + maximumSideLength, startPos.getZ() + maximumSideLength);
   }
 
   /**
@@ -159,39 +197,120 @@ public class BoxDetector {
     return Optional.empty();
   }
 
+  /**
+   * Find the largest rectangle of valid blocks around the start position, on the same level. The
+   * start position must be on the rectangle's perimeter or inside it.
+   * <p>
+   * Instead of trying every combination of corners, this measures how far the frame runs from the
+   * start position's row and column along each row and column it crosses. A rectangle's perimeter
+   * is valid exactly when its two rows run far enough from the start position's column and its two
+   * columns run far enough from the start position's row, so every row pair can be checked against
+   * the best columns in linear time. Only positions on those runs are ever looked up.
+   *
+   * @param startPos                The starting position
+   * @param scanDistance            The maximum side length
+   * @param validFrameBlockFunction A function that takes a block position and returns true if it
+   *                                is a valid block
+   * @return The largest rectangle (with an area of at least 3x3), if any
+   */
   public static Optional<BlockBox> findLargestValidBaseSquare(BlockPos startPos, int scanDistance,
       Function<BlockPos, Boolean> validFrameBlockFunction) {
 
-    final List<List<BlockPos>> blocksByDirection = new ArrayList<>();
-
-    for (Direction direction : List.of(Direction.NORTH, Direction.EAST, Direction.SOUTH,
-        Direction.WEST)) {
-      List<BlockPos> list = getValidBlocksInDir(startPos, direction, scanDistance,
-          validFrameBlockFunction);
+    final int maxOffset = Math.max(0, scanDistance - 1);
+
+    // How far the row north/south of the start by k runs west/east of the start's column
+    final int[] northRowWest = new int[maxOffset + 1];
+    final int[] northRowEast = new int[maxOffset + 1];
+    final int[] southRowWest = new int[maxOffset + 1];
+    final int[] southRowEast = new int[maxOffset + 1];
+
+    // How far the column west/east of the start by k runs north/south of the start's row
+    final int[] westColNorth = new int[maxOffset + 1];
+    final int[] westColSouth = new int[maxOffset + 1];
+    final int[] eastColNorth = new int[maxOffset + 1];
+    final int[] eastColSouth = new int[maxOffset + 1];
+
+    for (int k = 0; k <= maxOffset; k++) {
+      final BlockPos north = startPos.north(k);
+      final BlockPos south = startPos.south(k);
+      final BlockPos west = startPos.west(k);
+      final BlockPos east = startPos.east(k);
+
+      northRowWest[k] = getRunLength(north, Direction.WEST, maxOffset, validFrameBlockFunction);
+      northRowEast[k] = getRunLength(north, Direction.EAST, maxOffset, validFrameBlockFunction);
+      southRowWest[k] = getRunLength(south, Direction.WEST, maxOffset, validFrameBlockFunction);
+      southRowEast[k] = getRunLength(south, Direction.EAST, maxOffset, validFrameBlockFunction);
+      westColNorth[k] = getRunLength(west, Direction.NORTH, maxOffset, validFrameBlockFunction);
+      westColSouth[k] = getRunLength(west, Direction.SOUTH, maxOffset, validFrameBlockFunction);
+      eastColNorth[k] = getRunLength(east, Direction.NORTH, maxOffset, validFrameBlockFunction);
+      eastColSouth[k] = getRunLength(east, Direction.SOUTH, maxOffset, validFrameBlockFunction);
+    }
 
-      if (!list.isEmpty()) {
-        blocksByDirection.add(list);
+    final int[] bestEast = new int[maxOffset + 1];
+    int bestArea = 0;
+    BlockBox best = null;
+
+    // The north and south rows are n and s blocks away from the start
+    for (int n = 0; n <= maxOffset; n++) {
+      for (int s = 0; n + s + 1 <= scanDistance; s++) {
+
+        final int maxWest = Math.min(northRowWest[n], southRowWest[s]);
+        final int maxEast = Math.min(northRowEast[n], southRowEast[s]);
+        final int length = n + s + 1;
+
+        if (maxWest < 0 || maxEast < 0 || length < 3) {
+          continue;
+        }
+
+        // bestEast[k]: the furthest east column (at most k away) that reaches both rows
+        for (int k = 0; k <= maxEast; k++) {
+          final boolean valid = eastColNorth[k] >= n && eastColSouth[k] >= s;
+          bestEast[k] = valid ? k : (k == 0 ? -1 : bestEast[k - 1]);
+        }
+
+        for (int w = 0; w <= maxWest; w++) {
+          if (westColNorth[w] < n || westColSouth[w] < s) {
+            continue;
+          }
+
+          final int k = Math.min(maxEast, scanDistance - 1 - w);
+          if (k < 0) {
+            break;
+          }
+
+          final int e = bestEast[k];
+          final int width = w + e + 1;
+
+          if (e >= 0 && width >= 3 && width * length > bestArea) {
+            bestArea = width * length;
+            best = new BlockBox(startPos.getX() - w, startPos.getY(), startPos.getZ() - n,
+                startPos.getX() + e, startPos.getY(), startPos.getZ() + s);
+          }
+        }
       }
     }
 
-    if (blocksByDirection.size() < 2) {
-      return Optional.empty(); // Need at least 2
-    }
+    return Optional.ofNullable(best);
+  }
 
-    List<BlockBox> possibleBoxes = Lists.cartesianProduct(blocksByDirection).stream()
-        .map(BoxDetector::getBoxSurrounding)
-        .flatMap(Optional::stream)
-        .filter(box -> isValidSize(box, scanDistance))
-        .distinct()
-        .sorted(Comparator.comparingInt(BoxDetector::getArea).reversed())
-        .toList();
+  /**
+   * @return How many blocks past the given position the valid blocks continue in the given
+   * direction (at most {@code maxDistance}), or -1 if the position itself isn't valid.
+   */
+  private static int getRunLength(BlockPos origin, Direction direction, int maxDistance,
+      Function<BlockPos, Boolean> validFrameBlockFunction) {
+
+    if (!validFrameBlockFunction.apply(origin)) {
+      return -1;
+    }
 
-//    PandasBlueprints.LOGGER.info("Found {} possible bounding boxes...",
-//        possibleBoxes.size());
+    int distance = 0;
+    while (distance < maxDistance
+        && validFrameBlockFunction.apply(origin.offset(direction, distance + 1))) {
+      distance++;
+    }
 
-    return possibleBoxes.stream()
-        .filter(box -> hasValidPerimeter(box, validFrameBlockFunction))
-        .findFirst();
+    return distance;
   }
 
   /**
@@ -0,0 +1,121 @@
+package dev.michaud.pandas_blueprints.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.Vec3i;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Merges a grid of labelled cells into as few boxes as it can manage ("greedy meshing"). Each box
+ * only covers cells with the same label.
+ */
+public class BoxMerger {
+
+  /**
+   * A merged box
+   *
+   * @param box   The cells covered by the box (inclusive)
+   * @param label The label of every cell in the box
+   */
+  public record MergedBox(@NotNull BlockBox box, int label) {
+
+  }
+
+  /**
+   * Merge every cell with a non-zero label into boxes. Starting from the first unmerged cell, a box
+   * is grown along x, then z, then y for as long as every cell it would cover has the same label
+   * and isn't part of another box yet.
+   *
+   * @param labels The label of each cell, indexed by {@code x + z * width + y * width * length}. A
+   *               label of {@code 0} means the cell is empty.
+   * @param size   The width, height and length of the grid
+   * @return The merged boxes, in grid coordinates
+   */
+  public static @NotNull List<MergedBox> merge(byte @NotNull [] labels, @NotNull Vec3i size) {
+    final int width = size.getX();
+    final int height = size.getY();
+    final int length = size.getZ();
+    final int layer = width * length;
+
+    final boolean[] merged = new boolean[labels.length];
+    final List<MergedBox> out = new ArrayList<>();
+
+    for (int y = 0; y < height; y++) {
+      for (int z = 0; z < length; z++) {
+        for (int x = 0; x < width; x++) {
+
+          final int start = x + z * width + y * layer;
+          final byte label = labels[start];
+
+          if (label == 0 || merged[start]) {
+            continue;
+          }
+
+          // Grow along x
+          int maxX = x;
+          while (maxX + 1 < width && canMerge(labels, merged, start + (maxX + 1 - x), label)) {
+            maxX++;
+          }
+
+          // Grow along z, one row at a time
+          int maxZ = z;
+          while (maxZ + 1 < length
+              && canMergeRow(labels, merged, x, maxX, (maxZ + 1) * width + y * layer, label)) {
+            maxZ++;
+          }
+
+          // Grow along y, one layer at a time
+          int maxY = y;
+          while (maxY + 1 < height
+              && canMergeLayer(labels, merged, x, maxX, z, maxZ, maxY + 1, width, layer, label)) {
+            maxY++;
+          }
+
+          for (int by = y; by <= maxY; by++) {
+            for (int bz = z; bz <= maxZ; bz++) {
+              final int row = bz * width + by * layer;
+
+              for (int bx = x; bx <= maxX; bx++) {
+                merged[row + bx] = true;
+              }
+            }
+          }
+
+          out.add(new MergedBox(new BlockBox(x, y, z, maxX, maxY, maxZ), label));
+        }
+      }
+    }
+
+    return out;
+  }
+
+  private static boolean canMerge(byte[] labels, boolean[] merged, int index, byte label) {
+    return labels[index] == label && !merged[index];
+  }
+
+  private static boolean canMergeRow(byte[] labels, boolean[] merged, int minX, int maxX,
+      int rowStart, byte label) {
+
+    for (int x = minX; x <= maxX; x++) {
+      if (!canMerge(labels, merged, rowStart + x, label)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean canMergeLayer(byte[] labels, boolean[] merged, int minX, int maxX,
+      int minZ, int maxZ, int y, int width, int layer, byte label) {
+
+    for (int z = minZ; z <= maxZ; z++) {
+      if (!canMergeRow(labels, merged, minX, maxX, z * width + y * layer, label)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+}
@@ -4,12 +4,15 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Joiner.MapJoiner;
 import com.google.common.base.Splitter;
 import com.google.common.base.Splitter.MapSplitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.DataResult;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.registry.Registries;
@@ -33,15 +36,72 @@ public class CodecFormatUtil {
           });
 
   public static final Codec<BlockState> BLOCK_STATE_TO_STRING = Codec.STRING
-      .xmap(CodecFormatUtil::stringToBlockState, CodecFormatUtil::blockStateToString);
+      .xmap(CodecFormatUtil::cachedStringToBlockState, CodecFormatUtil::cachedBlockStateToString);
 
   private static final MapSplitter SPLITTER = Splitter.on(',').withKeyValueSeparator('=');
   private static final MapJoiner JOINER = Joiner.on(',').withKeyValueSeparator('=');
 
+  /**
+   * How many strings/states to remember. Schematics tend to reuse the same few hundred states, so
+   * this is plenty.
+   */
+  private static final int MAX_CACHED_STATES = 4096;
+
+  private static final Cache<String, BlockState> STRING_TO_STATE = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_STATES)
+      .build();
+
+  private static final Cache<BlockState, String> STATE_TO_STRING = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_STATES)
+      .build();
+
+  /**
+   * Clear the string/state caches whenever the registries might have changed.
+   */
+  public static void registerCacheInvalidation() {
+    ServerLifecycleEvents.END_DATA_PACK_RELOAD.register(
+        (server, resourceManager, success) -> clearCaches());
+    ServerLifecycleEvents.SERVER_STOPPED.register(server -> clearCaches());
+  }
+
+  public static void clearCaches() {
+    STRING_TO_STATE.invalidateAll();
+    STATE_TO_STRING.invalidateAll();
+  }
+
+  /**
+   * Same as {@link #blockStateToString(BlockState)}, but remembers the result.
+   */
+  public static String cachedBlockStateToString(BlockState state) {
+    String string = STATE_TO_STRING.getIfPresent(state);
+
+    if (string == null) {
+      string = blockStateToString(state);
+      STATE_TO_STRING.put(state, string);
+      STRING_TO_STATE.put(string, state);
+    }
+
+    return string;
+  }
+
+  /**
+   * Same as {@link #stringToBlockState(String)}, but remembers the result. Strings that can't be
+   * parsed aren't remembered.
+   */
+  public static BlockState cachedStringToBlockState(String string) {
+    BlockState state = STRING_TO_STATE.getIfPresent(string);
+
+    if (state == null) {
+      state = stringToBlockState(string);
+      STRING_TO_STATE.put(string, state);
+    }
+
+    return state;
+  }
+
   public static String blockStateToString(BlockState state) {
 
     final Block block = state.getBlock();
-    final Identifier id = Registries.BLOCK.getId(block);
     final BlockState defaultState = block.getDefaultState();
 
     final Map<String, String> propertyMap = state.getProperties().stream()
@@ -53,7 +113,7 @@ public class CodecFormatUtil {
             (first, second) -> first));
 
     final String propertyString = JOINER.join(propertyMap);
-    final String idString = id.getNamespace().equals("minecraft") ? id.getPath() : id.toString();
+    final String idString = blockToString(block);
 
     if (propertyString.isBlank()) {
       return idString;
@@ -62,6 +122,14 @@ public class CodecFormatUtil {
     }
   }
 
+  /**
+   * Get the block's id as a string, leaving out the namespace if it's {@code minecraft}.
+   */
+  public static String blockToString(Block block) {
+    final Identifier id = Registries.BLOCK.getId(block);
+    return id.getNamespace().equals("minecraft") ? id.getPath() : id.toString();
+  }
+
   public static BlockState stringToBlockState(String string) {
     final String nameStr;
     final String propStr;
@@ -107,7 +175,7 @@ public class CodecFormatUtil {
     return state;
   }
 
-  private static <T extends Comparable<T>> Optional<BlockState> withProperty(BlockState state,
+  public static <T extends Comparable<T>> Optional<BlockState> withProperty(BlockState state,
       Property<T> property, String valueString) {
     return property.parse(valueString)
         .map(value -> state.with(property, value));
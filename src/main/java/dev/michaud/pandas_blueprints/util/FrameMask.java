@@ -0,0 +1,68 @@
+package dev.michaud.pandas_blueprints.util;
+
+import it.unimi.dsi.fastutil.longs.Long2BooleanMap;
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
+import java.util.function.Function;
+import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Remembers which positions are valid frame blocks, so each position is only looked up in the
+ * world once no matter how many candidate boxes include it. Positions are probed the first time
+ * they're asked about, and only those are remembered, so the memory used follows how much of the
+ * search region was actually looked at rather than its full volume.
+ *
+ * @see BoxDetector
+ */
+public class FrameMask {
+
+  private final Function<BlockPos, Boolean> validFrameBlockFunction;
+  private final Long2BooleanMap probed = new Long2BooleanOpenHashMap();
+
+  private int lookups = 0;
+
+  /**
+   * @param validFrameBlockFunction A function that takes a block position and returns true if it
+   *                                is a valid frame block
+   */
+  public FrameMask(@NotNull Function<BlockPos, Boolean> validFrameBlockFunction) {
+    this.validFrameBlockFunction = validFrameBlockFunction;
+  }
+
+  /**
+   * @return True if the given position is a valid frame block
+   */
+  public boolean isValid(@NotNull BlockPos pos) {
+    return isValid(pos.getX(), pos.getY(), pos.getZ());
+  }
+
+  public boolean isValid(int x, int y, int z) {
+    lookups++;
+
+    final long key = BlockPos.asLong(x, y, z);
+
+    if (probed.containsKey(key)) {
+      return probed.get(key);
+    }
+
+    final boolean valid = validFrameBlockFunction.apply(new BlockPos(x, y, z));
+    probed.put(key, valid);
+
+    return valid;
+  }
+
+  /**
+   * @return How many positions were looked up in the world
+   */
+  public int getProbes() {
+    return probed.size();
+  }
+
+  /**
+   * @return How many times a position was asked about, including ones that were remembered
+   */
+  public int getLookups() {
+    return lookups;
+  }
+
+}
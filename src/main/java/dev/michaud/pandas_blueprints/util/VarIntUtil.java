@@ -1,15 +1,20 @@
 package dev.michaud.pandas_blueprints.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.UncheckedIOException;
-import java.util.Collection;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import org.jetbrains.annotations.NotNull;
 
 public class VarIntUtil {
 
+  /**
+   * The most bytes a single VarInt can take up
+   */
+  public static final int MAX_VARINT_SIZE = 5;
+
   /**
    * Write a variable-length int to the stream (using as few bytes as possible). The most
    * significant bit is reserved to signify if the following byte is part of the same value.
@@ -38,7 +43,7 @@ public class VarIntUtil {
   public static int readVarInt(InputStream in) throws IOException {
     int value = 0;
 
-    for (int i = 0; i < 5; i++) {
+    for (int i = 0; i < MAX_VARINT_SIZE; i++) {
 
       final int b = in.read();
       if (b == -1) {
@@ -55,22 +60,217 @@ public class VarIntUtil {
     throw new IOException("VarInt too big: length must be <= 5 bytes, data is likely corrupted!");
   }
 
-  public static void writeVarInts(Collection<Integer> values, OutputStream out) throws IOException {
-    for (int val : values) {
-      writeVarInt(val, out);
+  /**
+   * Get the number of bytes the given value takes up as a VarInt.
+   */
+  public static int varIntSize(int value) {
+    // Every 7 significant bits is one byte, and 0 still takes up one
+    return Math.max(1, (38 - Integer.numberOfLeadingZeros(value)) / 7);
+  }
+
+  /**
+   * Get the number of bytes the given values take up as VarInts.
+   *
+   * @param values The values
+   * @param from   The first index (inclusive)
+   * @param to     The last index (exclusive)
+   */
+  public static int varIntsSize(int @NotNull [] values, int from, int to) {
+    int size = 0;
+
+    for (int i = from; i < to; i++) {
+      size += varIntSize(values[i]);
+    }
+
+    return size;
+  }
+
+  /**
+   * Write a variable-length int to the array.
+   *
+   * @param value  The value to write.
+   * @param buf    The array to write to. Must have room for {@link #varIntSize(int)} bytes.
+   * @param offset The index to start writing at.
+   * @return The index after the last byte written.
+   */
+  public static int writeVarInt(int value, byte @NotNull [] buf, int offset) {
+    while ((value & ~0x7f) != 0) {
+      buf[offset++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+
+    buf[offset++] = (byte) value;
+    return offset;
+  }
+
+  /**
+   * Write some values to the array, one after the other.
+   *
+   * @param values The values to write
+   * @param from   The first index (inclusive)
+   * @param to     The last index (exclusive)
+   * @param buf    The array to write to. Must have room for {@link #varIntsSize} bytes.
+   * @param offset The index to start writing at.
+   * @return The index after the last byte written.
+   */
+  public static int writeVarInts(int @NotNull [] values, int from, int to, byte @NotNull [] buf,
+      int offset) {
+
+    for (int i = from; i < to; i++) {
+      offset = writeVarInt(values[i], buf, offset);
+    }
+
+    return offset;
+  }
+
+  /**
+   * Write some values to the array, prefixed by how many there are. Read them back with
+   * {@link Reader#readVarIntList()}.
+   *
+   * @return The index after the last byte written.
+   * @see #writeVarInts(int[], int, int, byte[], int)
+   */
+  public static int writeVarIntList(int @NotNull [] values, int from, int to,
+      byte @NotNull [] buf, int offset) {
+
+    offset = writeVarInt(to - from, buf, offset);
+    return writeVarInts(values, from, to, buf, offset);
+  }
+
+  /**
+   * Write a variable-length int to the buffer.
+   *
+   * @param value The value to write.
+   * @param buf   The buffer to write to.
+   */
+  public static void writeVarInt(int value, @NotNull ByteBuffer buf) {
+    while ((value & ~0x7f) != 0) {
+      buf.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
     }
+
+    buf.put((byte) value);
   }
 
-  public static byte[] toVarIntArray(Collection<Integer> values) {
-    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+  /**
+   * Read a variable length int from the buffer.
+   *
+   * @param buf The buffer to read from.
+   * @return The decoded int.
+   * @throws IOException If the buffer ended prematurely or the input was malformed.
+   */
+  public static int readVarInt(@NotNull ByteBuffer buf) throws IOException {
+    int value = 0;
 
     try {
-      writeVarInts(values, buffer);
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
+      for (int i = 0; i < MAX_VARINT_SIZE; i++) {
+        final byte b = buf.get();
+        value |= (b & 0x7f) << (i * 7);
+
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new EOFException("Unexpected end of buffer reading VarInt!");
+    }
+
+    throw new IOException("VarInt too big: length must be <= 5 bytes, data is likely corrupted!");
+  }
+
+  /**
+   * Reads VarInts from a byte array, keeping track of the position. Unlike reading through a
+   * stream, nothing is allocated per value.
+   */
+  public static class Reader {
+
+    private final byte[] data;
+    private final int limit;
+    private int position;
+
+    public Reader(byte @NotNull [] data) {
+      this(data, 0, data.length);
+    }
+
+    /**
+     * @param data   The array to read from
+     * @param offset The index to start at
+     * @param length The number of bytes that can be read
+     */
+    public Reader(byte @NotNull [] data, int offset, int length) {
+      this.data = data;
+      this.position = offset;
+      this.limit = offset + length;
     }
 
-    return buffer.toByteArray();
+    public int getPosition() {
+      return position;
+    }
+
+    public boolean hasRemaining() {
+      return position < limit;
+    }
+
+    public int remaining() {
+      return limit - position;
+    }
+
+    /**
+     * Read the next value.
+     *
+     * @throws IOException If the data ended prematurely or the input was malformed.
+     */
+    public int readVarInt() throws IOException {
+      int value = 0;
+
+      for (int i = 0; i < MAX_VARINT_SIZE; i++) {
+        if (position >= limit) {
+          throw new EOFException("Unexpected end of data reading VarInt!");
+        }
+
+        final byte b = data[position++];
+        value |= (b & 0x7f) << (i * 7);
+
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+
+      throw new IOException("VarInt too big: length must be <= 5 bytes, data is likely corrupted!");
+    }
+
+    /**
+     * Read the next {@code count} values into an array.
+     *
+     * @param dst    The array to read into
+     * @param offset The index to start writing at
+     * @param count  How many values to read
+     * @throws IOException If the data ended prematurely or the input was malformed.
+     */
+    public void readVarInts(int @NotNull [] dst, int offset, int count) throws IOException {
+      for (int i = 0; i < count; i++) {
+        dst[offset + i] = readVarInt();
+      }
+    }
+
+    /**
+     * Read a list of values written by {@link #writeVarIntList}.
+     *
+     * @throws IOException If the data ended prematurely or the input was malformed.
+     */
+    public int @NotNull [] readVarIntList() throws IOException {
+      final int count = readVarInt();
+
+      // Every value takes up at least one byte
+      if (count < 0 || count > remaining()) {
+        throw new IOException("Invalid VarInt list length: " + count);
+      }
+
+      final int[] out = new int[count];
+      readVarInts(out, 0, count);
+
+      return out;
+    }
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package dev.michaud.pandas_blueprints.blueprint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import dev.michaud.pandas_blueprints.util.CodecFormatUtil;
+import dev.michaud.pandas_blueprints.util.VarIntUtil;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.enums.BlockHalf;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.state.property.Properties;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3i;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class BlueprintSchematicTest {
+
+  @BeforeAll
+  static void beforeAll() {
+    SharedConstants.createGameVersion();
+    Bootstrap.initialize();
+  }
+
+  @Test
+  void testRoundTrip() throws IOException {
+    final List<BlockState> states = List.of(Blocks.STONE.getDefaultState(),
+        Blocks.OAK_PLANKS.getDefaultState(), Blocks.GLASS.getDefaultState(),
+        Blocks.OAK_STAIRS.getDefaultState().with(Properties.HORIZONTAL_FACING, Direction.EAST),
+        Blocks.OAK_STAIRS.getDefaultState().with(Properties.BLOCK_HALF, BlockHalf.TOP));
+
+    final Vec3i size = new Vec3i(13, 7, 9);
+    final Random random = new Random(0L);
+    final BlueprintSchematic.Builder builder = new BlueprintSchematic.Builder(size,
+        new BlockPos(1, -2, 3));
+
+    for (int y = 0; y < size.getY(); y++) {
+      for (int z = 0; z < size.getZ(); z++) {
+        for (int x = 0; x < size.getX(); x++) {
+          if (y == 0) {
+            builder.set(x, y, z, states.getFirst(), null); // One long run
+          } else if (random.nextFloat() < 0.4f) {
+            builder.set(x, y, z, states.get(random.nextInt(states.size())), null);
+          }
+        }
+      }
+    }
+
+    final BlueprintSchematic schematic = builder.build();
+    final BlueprintSchematic decoded = BlueprintSchematic.readNbt(
+        schematic.writeNbt(new NbtCompound(), false));
+
+    assertSameBlocks(schematic, decoded);
+  }
+
+  @Test
+  void testReadVersion1() throws IOException {
+    final Vec3i size = new Vec3i(4, 2, 3);
+    final BlockPalette palette = BlockPalette.copyOf(
+        List.of(Blocks.STONE.getDefaultState(), Blocks.DIRT.getDefaultState()));
+
+    // Absolute positions: stone at 0, 1, 2 and dirt at 5, 23
+    final int[] values = {3, 0, 1, 2, 2, 5, 23};
+    final byte[] data = new byte[VarIntUtil.varIntsSize(values, 0, values.length)];
+    VarIntUtil.writeVarInts(values, 0, values.length, data, 0);
+
+    final NbtCompound blockData = new NbtCompound();
+    blockData.put("Palette", BlockPalette.CODEC, palette);
+    blockData.putByteArray("Data", data);
+
+    final NbtCompound nbt = new NbtCompound();
+    nbt.put("Blocks", blockData);
+    nbt.put("Width", CodecFormatUtil.UNSIGNED_SHORT, size.getX());
+    nbt.put("Height", CodecFormatUtil.UNSIGNED_SHORT, size.getY());
+    nbt.put("Length", CodecFormatUtil.UNSIGNED_SHORT, size.getZ());
+    nbt.putInt("Version", 1);
+    nbt.putInt("DataVersion", BlueprintSchematic.DATA_VERSION);
+
+    final BlueprintSchematic schematic = BlueprintSchematic.readNbt(nbt);
+
+    assertEquals(5, schematic.getBlockCount());
+    assertEquals(Blocks.STONE.getDefaultState(), schematic.getBlockState(2, 0, 0));
+    assertEquals(Blocks.DIRT.getDefaultState(), schematic.getBlockState(1, 0, 1));
+    assertEquals(Blocks.DIRT.getDefaultState(), schematic.getBlockState(3, 1, 2));
+
+    // Reading and writing it again upgrades it to the current version
+    assertSameBlocks(schematic,
+        BlueprintSchematic.readNbt(schematic.writeNbt(new NbtCompound(), false)));
+  }
+
+  private static void assertSameBlocks(BlueprintSchematic expected, BlueprintSchematic actual) {
+    assertEquals(expected.getSize(), actual.getSize());
+    assertEquals(expected.getOffset(), actual.getOffset());
+    assertEquals(expected.getBlockCount(), actual.getBlockCount());
+
+    final Vec3i size = expected.getSize();
+
+    for (int y = 0; y < size.getY(); y++) {
+      for (int z = 0; z < size.getZ(); z++) {
+        for (int x = 0; x < size.getX(); x++) {
+          assertEquals(expected.getBlockState(x, y, z), actual.getBlockState(x, y, z));
+        }
+      }
+    }
+  }
+
+}
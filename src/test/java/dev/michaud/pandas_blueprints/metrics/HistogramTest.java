@@ -0,0 +1,43 @@
+package dev.michaud.pandas_blueprints.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.michaud.pandas_blueprints.metrics.Metric.Unit;
+import org.junit.jupiter.api.Test;
+
+public class HistogramTest {
+
+  @Test
+  void testRecord() {
+    final Histogram histogram = new Histogram("test", Unit.COUNT);
+
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(5050, histogram.getSum());
+    assertEquals(100, histogram.getMax());
+    assertEquals(50.5, histogram.getMean());
+
+    // Percentiles are the top of a power-of-two bucket, so within a factor of two
+    final long p50 = histogram.getPercentile(0.5);
+    assertTrue(p50 >= 50 && p50 < 100, "p50 was " + p50);
+    assertEquals(100, histogram.getPercentile(1));
+  }
+
+  @Test
+  void testReset() {
+    final Histogram histogram = new Histogram("test", Unit.NANOS);
+    histogram.record(0);
+    histogram.record(1_000_000);
+    histogram.reset();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getPercentile(0.5));
+    assertEquals("test: none", histogram.summarize());
+  }
+
+}
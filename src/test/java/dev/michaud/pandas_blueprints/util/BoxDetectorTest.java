@@ -0,0 +1,93 @@
+package dev.michaud.pandas_blueprints.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+
+public class BoxDetectorTest {
+
+  @Test
+  void testFindsRectangle() {
+    final Set<BlockPos> frame = new HashSet<>();
+    addPerimeter(frame, new BlockBox(0, 0, 0, 6, 0, 4));
+    frame.add(new BlockPos(3, 0, 6)); // Stray block outside
+
+    final Optional<BlockBox> box = BoxDetector.findLargestValidBaseSquare(new BlockPos(3, 0, 4),
+        10, frame::contains);
+
+    assertEquals(Optional.of(new BlockBox(0, 0, 0, 6, 0, 4)), box);
+  }
+
+  @Test
+  void testMatchesBruteForce() {
+    final int maxSideLength = 7;
+    final BlockPos start = BlockPos.ORIGIN;
+
+    for (long seed = 0; seed < 200; seed++) {
+      final Random random = new Random(seed);
+      final Set<BlockPos> frame = new HashSet<>();
+
+      for (int x = -maxSideLength; x <= maxSideLength; x++) {
+        for (int z = -maxSideLength; z <= maxSideLength; z++) {
+          if (random.nextFloat() < 0.8f) {
+            frame.add(new BlockPos(x, 0, z));
+          }
+        }
+      }
+
+      frame.add(start);
+
+      final Optional<BlockBox> box = BoxDetector.findLargestValidBaseSquare(start, maxSideLength,
+          frame::contains);
+
+      assertEquals(bruteForceArea(start, maxSideLength, frame::contains),
+          box.map(BoxDetector::getArea).orElse(0), "seed " + seed);
+      box.ifPresent(b -> assertTrue(BoxDetector.hasValidPerimeter(b, frame::contains)));
+    }
+  }
+
+  private static int bruteForceArea(BlockPos start, int maxSideLength,
+      Function<BlockPos, Boolean> isValid) {
+    int best = 0;
+
+    for (int n = 0; n < maxSideLength; n++) {
+      for (int s = 0; s < maxSideLength; s++) {
+        for (int w = 0; w < maxSideLength; w++) {
+          for (int e = 0; e < maxSideLength; e++) {
+            final BlockBox box = new BlockBox(start.getX() - w, 0, start.getZ() - n,
+                start.getX() + e, 0, start.getZ() + s);
+
+            if (box.getBlockCountX() >= 3 && box.getBlockCountZ() >= 3
+                && BoxDetector.isValidSize(box, maxSideLength)
+                && BoxDetector.hasValidPerimeter(box, isValid)) {
+              best = Math.max(best, BoxDetector.getArea(box));
+            }
+          }
+        }
+      }
+    }
+
+    return best;
+  }
+
+  private static void addPerimeter(Set<BlockPos> frame, BlockBox box) {
+    for (int x = box.getMinX(); x <= box.getMaxX(); x++) {
+      frame.add(new BlockPos(x, box.getMinY(), box.getMinZ()));
+      frame.add(new BlockPos(x, box.getMinY(), box.getMaxZ()));
+    }
+
+    for (int z = box.getMinZ(); z <= box.getMaxZ(); z++) {
+      frame.add(new BlockPos(box.getMinX(), box.getMinY(), z));
+      frame.add(new BlockPos(box.getMaxX(), box.getMinY(), z));
+    }
+  }
+
+}
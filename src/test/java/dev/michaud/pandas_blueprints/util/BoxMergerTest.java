@@ -0,0 +1,71 @@
+package dev.michaud.pandas_blueprints.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dev.michaud.pandas_blueprints.util.BoxMerger.MergedBox;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.Vec3i;
+import org.junit.jupiter.api.Test;
+
+public class BoxMergerTest {
+
+  @Test
+  void testMergesSolidVolume() {
+    final Vec3i size = new Vec3i(4, 3, 5);
+    final byte[] labels = new byte[size.getX() * size.getY() * size.getZ()];
+    Arrays.fill(labels, (byte) 2);
+
+    final List<MergedBox> boxes = BoxMerger.merge(labels, size);
+
+    assertEquals(List.of(new MergedBox(new BlockBox(0, 0, 0, 3, 2, 4), 2)), boxes);
+  }
+
+  @Test
+  void testCoversLabelsExactly() {
+    for (long seed = 0; seed < 200; seed++) {
+      final Random random = new Random(seed);
+      final Vec3i size = new Vec3i(1 + random.nextInt(8), 1 + random.nextInt(8),
+          1 + random.nextInt(8));
+      final byte[] labels = new byte[size.getX() * size.getY() * size.getZ()];
+
+      // Few labels and some clumping, so there's something to merge
+      final int labelCount = 1 + random.nextInt(3);
+      for (int i = 0; i < labels.length; i++) {
+        labels[i] = i > 0 && random.nextFloat() < 0.6f
+            ? labels[i - 1]
+            : (byte) random.nextInt(labelCount + 1);
+      }
+
+      final List<MergedBox> boxes = BoxMerger.merge(labels, size);
+      final boolean[] covered = new boolean[labels.length];
+
+      for (MergedBox merged : boxes) {
+        final BlockBox box = merged.box();
+
+        for (int y = box.getMinY(); y <= box.getMaxY(); y++) {
+          for (int z = box.getMinZ(); z <= box.getMaxZ(); z++) {
+            for (int x = box.getMinX(); x <= box.getMaxX(); x++) {
+              final int index = x + z * size.getX() + y * size.getX() * size.getZ();
+
+              assertFalse(covered[index], "seed " + seed + ": boxes overlap at " + index);
+              assertEquals(labels[index], merged.label(), "seed " + seed + ": mixed labels");
+              covered[index] = true;
+            }
+          }
+        }
+      }
+
+      for (int i = 0; i < labels.length; i++) {
+        assertEquals(labels[i] != 0, covered[i], "seed " + seed + ": cell " + i);
+      }
+
+      assertTrue(boxes.size() <= labels.length);
+    }
+  }
+
+}
@@ -1,5 +1,9 @@
 package dev.michaud.pandas_blueprints.util;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import dev.michaud.pandas_blueprints.PandasBlueprints;
@@ -80,4 +84,22 @@ public class CodecFormatUtilTest {
         states.size(), elapsed);
 
   }
-}
\ No newline at end of file
+
+  @Test
+  void testCachedConversions() {
+    CodecFormatUtil.clearCaches();
+
+    for (String blockStateString : TEST_BLOCKSTATE_STRINGS) {
+      final BlockState state = CodecFormatUtil.stringToBlockState(blockStateString);
+      final String string = CodecFormatUtil.blockStateToString(state);
+
+      assertSame(state, CodecFormatUtil.cachedStringToBlockState(blockStateString));
+      assertSame(state, CodecFormatUtil.cachedStringToBlockState(blockStateString));
+      assertEquals(string, CodecFormatUtil.cachedBlockStateToString(state));
+      assertSame(state, CodecFormatUtil.cachedStringToBlockState(string));
+    }
+
+    assertThrows(IllegalArgumentException.class,
+        () -> CodecFormatUtil.cachedStringToBlockState("minecraft:stone[not_a_property=1]"));
+  }
+}
@@ -0,0 +1,60 @@
+package dev.michaud.pandas_blueprints.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+public class VarIntUtilTest {
+
+  private static final int[] TEST_VALUES = {0, 1, 127, 128, 255, 16383, 16384, 2097151, 2097152,
+      268435455, 268435456, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+
+  @Test
+  void testArrayMatchesStream() throws IOException {
+    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+    for (int value : TEST_VALUES) {
+      VarIntUtil.writeVarInt(value, stream);
+    }
+
+    final byte[] array = new byte[VarIntUtil.varIntsSize(TEST_VALUES, 0, TEST_VALUES.length)];
+    final int end = VarIntUtil.writeVarInts(TEST_VALUES, 0, TEST_VALUES.length, array, 0);
+
+    assertEquals(array.length, end);
+    assertArrayEquals(stream.toByteArray(), array);
+  }
+
+  @Test
+  void testRoundTrip() throws IOException {
+    final byte[] array = new byte[VarIntUtil.varIntSize(TEST_VALUES.length)
+        + VarIntUtil.varIntsSize(TEST_VALUES, 0, TEST_VALUES.length)];
+
+    VarIntUtil.writeVarIntList(TEST_VALUES, 0, TEST_VALUES.length, array, 0);
+
+    final VarIntUtil.Reader reader = new VarIntUtil.Reader(array);
+    assertArrayEquals(TEST_VALUES, reader.readVarIntList());
+    assertFalse(reader.hasRemaining());
+
+    final ByteArrayInputStream in = new ByteArrayInputStream(array, 1, array.length - 1);
+    for (int value : TEST_VALUES) {
+      assertEquals(value, VarIntUtil.readVarInt(in));
+    }
+  }
+
+  @Test
+  void testMalformed() {
+    final byte[] truncated = {(byte) 0x80, (byte) 0x80};
+    assertThrows(EOFException.class, () -> new VarIntUtil.Reader(truncated).readVarInt());
+
+    final byte[] tooLong = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0};
+    assertThrows(IOException.class, () -> new VarIntUtil.Reader(tooLong).readVarInt());
+  }
+
+}